@@ -0,0 +1,101 @@
+/**
+ * The class <b>ArrayQueue</b> is an implementation of the interface
+ * <b>Queue</b> using a circular array. The capacity of the array is
+ * always a power of two, so positions wrap around with a mask, and it
+ * doubles when the queue is full. Optionally, the array also shrinks
+ * back when the queue is mostly drained.
+ */
+public class ArrayQueue<E> implements Queue<E> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private E[] elems;
+
+    private int front;
+
+    private int size;
+
+    private int initialCapacity;
+
+    private boolean shrink;
+
+    /**
+     * Creates an empty queue with the default capacity,
+     * which never shrinks
+     */
+    public ArrayQueue() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * Creates an empty queue
+     *
+     * @param capacity
+     *  the initial capacity, rounded up to a power of two
+     * @param shrink
+     *  true if the array should be halved when the queue
+     *  is less than a quarter full
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayQueue(int capacity, boolean shrink) {
+        if(capacity < 1 || capacity > (1 << 30)){
+            throw new IllegalArgumentException("Wrong capacity " + capacity);
+        }
+        initialCapacity = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        elems = (E[]) new Object[initialCapacity];
+        front = 0;
+        size = 0;
+        this.shrink = shrink;
+    }
+
+    public E peek() {
+        if(isEmpty()){
+            throw new IllegalStateException("Cannot call peek on an empty queue");
+        }
+        return elems[front];
+    }
+
+    public void enqueue(E value) {
+        if(value == null){
+            throw new NullPointerException("Cannot enqueue a null value");
+        }
+        if(size == elems.length) {
+            resize(elems.length << 1);
+        }
+        elems[(front + size) & (elems.length - 1)] = value;
+        size++;
+    }
+
+    public E dequeue() {
+        if(isEmpty()){
+            throw new IllegalStateException("Cannot call dequeue on an empty queue");
+        }
+        E result = elems[front];
+        elems[front] = null; // scrubbing the memory
+        front = (front + 1) & (elems.length - 1);
+        size--;
+        if(shrink && elems.length > initialCapacity && size <= (elems.length >>> 2)) {
+            resize(elems.length >>> 1);
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        E[] newElems = (E[]) new Object[capacity];
+        for(int i = 0; i < size; i++){
+            newElems[i] = elems[(front + i) & (elems.length - 1)];
+        }
+        elems = newElems;
+        front = 0;
+    }
+
+}
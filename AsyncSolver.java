@@ -0,0 +1,169 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <b>AsyncSolver</b> computes shortest solutions to the
+ * <b>Lights Out</b> game on a dedicated thread, so that the Swing
+ * event thread is never blocked by a large board.
+ *
+ * Each call to <b>solve</b> works on a copy of the model, taken by
+ * the caller, and returns a <b>CompletableFuture&lt;Solution&gt;</b>.
+ * Only the last request matters: a new call cancels the previous
+ * future, which interrupts its search if it is running (see
+ * <b>LinearSolver.minimize</b>) and skips it if it is still queued.
+ * The solver of the size of the board is loaded or computed first
+ * (see <b>KernelRegistry</b>), and is never interrupted: its file
+ * would be lost otherwise. A request cancelled meanwhile stops once
+ * it is ready.
+ * A future which misses its deadline fails with a
+ * <b>TimeoutException</b> and is cancelled the same way; one for a
+ * board with too many solutions to search fails with the
+ * <b>IllegalStateException</b> of <b>LightsOut.solveShortest</b>.
+ *
+ * The futures complete on the solver thread: a Swing application
+ * applies the result with <b>SwingUtilities.invokeLater</b>, after
+ * checking with <b>GameModel.setSolution(Solution, long)</b> that
+ * the board has not changed in the meantime.
+ */
+public class AsyncSolver {
+
+    /**
+     * runs the solves one at a time, on a daemon thread
+     */
+    private ExecutorService executor;
+
+    /**
+     * the future of the last request, null if there was none
+     */
+    private CompletableFuture<Solution> last;
+
+    /**
+     * the thread running the search of a request, null
+     * while it is not searching. Only that thread is 
+     * interrupted by a cancellation.
+     */
+    private static class Search {
+        private Thread thread;
+    }
+
+    /**
+     * Constructor. Starts the solver thread.
+     */
+    public AsyncSolver() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "LightsOut solver");
+            t.setDaemon(true);
+            return t;
+        });
+        last = null;
+    }
+
+    /**
+     * solves the game in the state specified by the model,
+     * without deadline
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  the future shortest solution, null if the
+     * board is unsolvable
+     */
+    public CompletableFuture<Solution> solve(GameModel model) {
+        return solve(model, 0);
+    }
+
+    /**
+     * solves the game in the state specified by the model,
+     * cancelling the previous request if it is not done.
+     * The model is copied before this method returns, so
+     * it can be modified while the solve is running.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param timeoutMillis
+     *  the deadline of the solve, in milliseconds,
+     * 0 for none
+     * @return
+     *  the future shortest solution, null if the
+     * board is unsolvable
+     */
+    public synchronized CompletableFuture<Solution> solve(GameModel model, long timeoutMillis) {
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+        if(timeoutMillis < 0) {
+            throw new IllegalArgumentException("Wrong timeout " + timeoutMillis);
+        }
+        if(executor.isShutdown()) {
+            throw new IllegalStateException("Solver is shut down");
+        }
+
+        GameModel snapshot = new GameModel(model);
+        CompletableFuture<Solution> result = new CompletableFuture<Solution>();
+        Search search = new Search();
+        executor.execute(() -> {
+            if(result.isDone()) {
+                // cancelled or timed out while queued
+                return;
+            }
+            try{
+                // not interruptible: it may read or write a file
+                KernelRegistry.get(snapshot);
+                synchronized(search) {
+                    if(result.isDone()) {
+                        return;
+                    }
+                    search.thread = Thread.currentThread();
+                }
+                result.complete(GameModel.getSolutionCache().solveShortest(snapshot));
+            } catch(CancellationException e){
+                result.cancel(false);
+            } catch(Throwable e){
+                // an Error too, e.g. no memory for the solver,
+                // or the future would never complete
+                result.completeExceptionally(e);
+            } finally{
+                synchronized(search) {
+                    search.thread = null;
+                }
+                // an interrupt which came too late must not
+                // reach the next request
+                Thread.interrupted();
+            }
+        });
+        result.whenComplete((solution, e) -> {
+            if(e != null) {
+                synchronized(search) {
+                    if(search.thread != null) {
+                        search.thread.interrupt();
+                    }
+                }
+            }
+        });
+        if(timeoutMillis > 0) {
+            result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        if(last != null) {
+            last.cancel(false);
+        }
+        last = result;
+        return result;
+    }
+
+    /**
+     * cancels the last request and stops the solver
+     * thread. No request can be made afterwards.
+     */
+    public synchronized void shutdown() {
+        if(last != null) {
+            last.cancel(false);
+        }
+        executor.shutdownNow();
+    }
+
+}
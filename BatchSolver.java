@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The class <b>BatchSolver</b> finds the shortest solution of each game
+ * of a sequence of games, in the order of the sequence.
+ *
+ * The games are read by batches. Within a batch, the games are grouped
+ * by size, so that each group shares the <b>LinearSolver</b> of its
+ * size (see <b>KernelRegistry</b>), and the games of a group are solved
+ * 64 at a time, one per bit of a long (see
+ * <b>LinearSolver.particular(GameModel[],int,int)</b>).
+ *
+ * The solution of a game without solution is null. So is the solution
+ * of a game with too many solutions to search them for the shortest
+ * one (see <b>LinearSolver.MAX_NULLITY</b>): such a game is reported
+ * as unsupported by <b>isUnsupported</b>, and the games after it are
+ * still solved.
+ */
+public class BatchSolver implements Iterator<Solution> {
+
+    /**
+     * default number of games read at once
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * the games still to read
+     */
+    private Iterator<GameModel> models;
+
+    /**
+     * the maximum number of games read at once
+     */
+    private int batchSize;
+
+    /**
+     * the solutions of the current batch
+     */
+    private Solution[] solutions;
+
+    /**
+     * the games of the current batch which could
+     * not be searched
+     */
+    private boolean[] unsupported;
+
+    /**
+     * true if the last game returned was unsupported
+     */
+    private boolean lastUnsupported;
+
+    /**
+     * the number of unsupported games returned so far
+     */
+    private int unsupportedCount;
+
+    /**
+     * the number of solutions in the current batch
+     */
+    private int count;
+
+    /**
+     * the index of the next solution to return
+     */
+    private int next;
+
+    /**
+     * Constructor. Creates an iterator over the shortest
+     * solutions of the games, with the default batch size.
+     *
+     * @param models
+     *  the games to solve
+     */
+    public BatchSolver(Iterator<GameModel> models) {
+        this(models, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor. Creates an iterator over the shortest
+     * solutions of the games.
+     *
+     * @param models
+     *  the games to solve
+     * @param batchSize
+     *  the maximum number of games read at once
+     */
+    public BatchSolver(Iterator<GameModel> models, int batchSize) {
+
+        if(models == null) {
+            throw new NullPointerException("models can't be null");
+        }
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Wrong batch size " + batchSize);
+        }
+
+        this.models = models;
+        this.batchSize = batchSize;
+        solutions = new Solution[0];
+        unsupported = new boolean[0];
+        count = 0;
+        next = 0;
+    }
+
+    public boolean hasNext() {
+        if(next == count && models.hasNext()) {
+            solveBatch();
+        }
+        return next < count;
+    }
+
+    public Solution next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException("No more games");
+        }
+        Solution result = solutions[next];
+        lastUnsupported = unsupported[next];
+        if(lastUnsupported) {
+            unsupportedCount++;
+        }
+        solutions[next++] = null;
+        return result;
+    }
+
+    /**
+     * returns true if the game of the last solution returned
+     * by <b>next</b> has too many solutions to search them for
+     * the shortest one. Its solution is null, even though it
+     * may be solvable (see <b>LightsOut.isSolvable</b>).
+     *
+     * @return true if the last game is unsupported
+     */
+    public boolean isUnsupported() {
+        return lastUnsupported;
+    }
+
+    /**
+     * returns the number of unsupported games among
+     * the games returned so far
+     *
+     * @return the number of unsupported games
+     */
+    public int getUnsupportedCount() {
+        return unsupportedCount;
+    }
+
+    /**
+     * reads and solves the next batch of games
+     */
+    private void solveBatch() {
+
+        ArrayList<GameModel> batch = new ArrayList<GameModel>();
+        while(batch.size() < batchSize && models.hasNext()){
+            GameModel model = models.next();
+            if(model == null) {
+                throw new NullPointerException("model can't be null");
+            }
+            batch.add(model);
+        }
+
+        // the indices of the games of each size, in order
+        LinkedHashMap<Long,ArrayList<Integer>> groups = new LinkedHashMap<Long,ArrayList<Integer>>();
+        for(int i = 0; i < batch.size(); i++){
+            GameModel model = batch.get(i);
+            long key = ((long)model.getWidth() << 32) | model.getHeight();
+            groups.computeIfAbsent(key, k -> new ArrayList<Integer>()).add(i);
+        }
+
+        solutions = new Solution[batch.size()];
+        unsupported = new boolean[batch.size()];
+        GameModel[] lanes = new GameModel[64];
+        for(ArrayList<Integer> group : groups.values()){
+            LinearSolver solver = KernelRegistry.get(batch.get(group.get(0)));
+            for(int start = 0; start < group.size(); start += 64){
+                int lanesUsed = Math.min(64, group.size() - start);
+                for(int l = 0; l < lanesUsed; l++){
+                    lanes[l] = batch.get(group.get(start + l));
+                }
+                long[][] xs = solver.particular(lanes, 0, lanesUsed);
+                for(int l = 0; l < lanesUsed; l++){
+                    try{
+                        solutions[group.get(start + l)] = solver.shortest(lanes[l], xs[l]);
+                    } catch(CancellationException e){
+                        // interrupted: not a property of the game
+                        throw e;
+                    } catch(IllegalStateException e){
+                        // too many solutions to find a shortest one
+                        unsupported[group.get(start + l)] = true;
+                    }
+                }
+            }
+        }
+        count = batch.size();
+        next = 0;
+    }
+
+}
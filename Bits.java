@@ -0,0 +1,109 @@
+/**
+ * The class <b>Bits</b> groups the operations on the bit vectors
+ * used to store boards. A board of size <b>widthxheight</b> is
+ * stored in an array of <b>(width*height+63)/64</b> longs, and the
+ * cell at row i and column j is bit <b>i*width+j</b>.
+ */
+final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * returns the number of longs needed to store
+     * <b>length</b> bits
+     */
+    static int words(int length) {
+        return (length + 63) >>> 6;
+    }
+
+    static boolean get(long[] v, int i) {
+        return (v[i >>> 6] & (1L << i)) != 0;
+    }
+
+    static void set(long[] v, int i) {
+        v[i >>> 6] |= 1L << i;
+    }
+
+    static void clear(long[] v, int i) {
+        v[i >>> 6] &= ~(1L << i);
+    }
+
+    static void flip(long[] v, int i) {
+        v[i >>> 6] ^= 1L << i;
+    }
+
+    /**
+     * sets the first <b>length</b> bits of v
+     * and clears the others
+     */
+    static void fill(long[] v, int length) {
+        for(int w = 0; w < v.length; w++){
+            int left = length - (w << 6);
+            v[w] = left >= 64 ? -1L : (left <= 0 ? 0L : (1L << left) - 1);
+        }
+    }
+
+    /**
+     * returns the <b>length</b> bits of v starting at
+     * bit <b>from</b>, with length at most 64
+     */
+    static long extract(long[] v, int from, int length) {
+        int w = from >>> 6;
+        int shift = from & 63;
+        long value = v[w] >>> shift;
+        if(shift + length > 64) {
+            value |= v[w + 1] << (64 - shift);
+        }
+        return length == 64 ? value : value & ((1L << length) - 1);
+    }
+
+    /**
+     * ors the <b>length</b> low bits of value into v,
+     * starting at bit <b>from</b>, with length at most 64
+     */
+    static void deposit(long[] v, int from, int length, long value) {
+        if(length < 64) {
+            value &= (1L << length) - 1;
+        }
+        int w = from >>> 6;
+        int shift = from & 63;
+        v[w] |= value << shift;
+        if(shift + length > 64) {
+            v[w + 1] |= value >>> (64 - shift);
+        }
+    }
+
+    static void xor(long[] v, long[] other) {
+        for(int w = 0; w < v.length; w++){
+            v[w] ^= other[w];
+        }
+    }
+
+    static void or(long[] v, long[] other) {
+        for(int w = 0; w < v.length; w++){
+            v[w] |= other[w];
+        }
+    }
+
+    static int count(long[] v) {
+        int total = 0;
+        for(int w = 0; w < v.length; w++){
+            total += Long.bitCount(v[w]);
+        }
+        return total;
+    }
+
+    /**
+     * returns the parity of the number of
+     * bits set in both v and other
+     */
+    static boolean parity(long[] v, long[] other) {
+        long acc = 0L;
+        for(int w = 0; w < v.length; w++){
+            acc ^= v[w] & other[w];
+        }
+        return (Long.bitCount(acc) & 1) == 1;
+    }
+
+}
@@ -0,0 +1,384 @@
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The class <b>BoardCodec</b> reads and writes boards (<b>GameModel</b>)
+ * and solutions (<b>Solution</b>) in a compact binary format, through a
+ * <b>ByteBuffer</b>.
+ *
+ * An encoding starts with the version of the format (one byte), a byte
+ * of flags (<b>SOLUTION</b> if it is a solution, <b>RUN_LENGTH</b> if
+ * the cells are run-length encoded), then the width and the height as
+ * varints: unsigned, 7 bits per byte, low bits first, the high bit set
+ * on all the bytes but the last.
+ *
+ * The cells follow, in the order of <b>Bits</b>, set if the dot is
+ * ``on'' (or pressed, for a solution). Packed, they take
+ * ceil(width*height/8) bytes: bit k of byte b is the cell 8*b+k. Run
+ * length encoded, they are the number of cells set, then for each of
+ * them, in increasing order, the number of clear cells before it since
+ * the previous one, all as varints. Sparse boards are much smaller that
+ * way; <b>write</b> picks the smaller encoding unless asked otherwise.
+ *
+ * Packed cells are moved 64 at a time between the buffer and the bit
+ * vector, through a view of the buffer, without an intermediate array.
+ *
+ * A few bytes of run-length encoding can describe a very large empty
+ * board, so the readers refuse the boards of more cells than a limit,
+ * <b>DEFAULT_MAX_CELLS</b> unless the caller gives another one.
+ */
+public final class BoardCodec {
+
+    /**
+     * the version of the format written
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * the flags of the header
+     */
+    public static final int SOLUTION = 1;
+    public static final int RUN_LENGTH = 2;
+
+    /**
+     * the largest number of cells of a board in the format
+     */
+    public static final int MAX_CELLS = 1 << 28;
+
+    /**
+     * the largest number of cells of a board read, unless
+     * the caller gives another limit: 256x256
+     */
+    public static final int DEFAULT_MAX_CELLS = 1 << 16;
+
+    private BoardCodec() {
+    }
+
+    /**
+     * writes the board, with the smaller encoding
+     *
+     * @param model
+     *  the board
+     * @param out
+     *  the buffer, whose position is moved after the encoding
+     * @throws BufferOverflowException
+     *  if the buffer is too small, see <b>encodedSize</b>
+     */
+    public static void write(GameModel model, ByteBuffer out) {
+        long[] bits = model.toBits();
+        int cells = model.getWidth()*model.getHeight();
+        write(out, 0, model.getWidth(), model.getHeight(), bits, runLengthSize(bits) < packedSize(cells));
+    }
+
+    /**
+     * writes the board
+     *
+     * @param model
+     *  the board
+     * @param out
+     *  the buffer, whose position is moved after the encoding
+     * @param runLength
+     *  true to run-length encode the cells, false to pack them
+     * @throws BufferOverflowException
+     *  if the buffer is too small
+     */
+    public static void write(GameModel model, ByteBuffer out, boolean runLength) {
+        write(out, 0, model.getWidth(), model.getHeight(), model.toBits(), runLength);
+    }
+
+    /**
+     * writes the solution, with the smaller encoding
+     *
+     * @param solution
+     *  the solution, which must be complete
+     * @param out
+     *  the buffer, whose position is moved after the encoding
+     * @throws BufferOverflowException
+     *  if the buffer is too small, see <b>encodedSize</b>
+     */
+    public static void write(Solution solution, ByteBuffer out) {
+        long[] bits = solutionBits(solution);
+        int cells = solution.getWidth()*solution.getHeight();
+        write(out, SOLUTION, solution.getWidth(), solution.getHeight(), bits,
+              runLengthSize(bits) < packedSize(cells));
+    }
+
+    /**
+     * writes the solution
+     *
+     * @param solution
+     *  the solution, which must be complete
+     * @param out
+     *  the buffer, whose position is moved after the encoding
+     * @param runLength
+     *  true to run-length encode the cells, false to pack them
+     * @throws BufferOverflowException
+     *  if the buffer is too small
+     */
+    public static void write(Solution solution, ByteBuffer out, boolean runLength) {
+        write(out, SOLUTION, solution.getWidth(), solution.getHeight(), solutionBits(solution), runLength);
+    }
+
+    private static long[] solutionBits(Solution solution) {
+        if(!solution.isReady()) {
+            throw new IllegalArgumentException("Incomplete solution");
+        }
+        return solution.toBits();
+    }
+
+    /**
+     * returns the number of bytes written by <b>write(model, out)</b>
+     *
+     * @param model
+     *  the board
+     * @return the size of the smaller encoding
+     */
+    public static int encodedSize(GameModel model) {
+        return encodedSize(model.getWidth(), model.getHeight(), model.toBits());
+    }
+
+    /**
+     * returns the number of bytes written by <b>write(solution, out)</b>
+     *
+     * @param solution
+     *  the solution
+     * @return the size of the smaller encoding
+     */
+    public static int encodedSize(Solution solution) {
+        return encodedSize(solution.getWidth(), solution.getHeight(), solution.toBits());
+    }
+
+    private static int encodedSize(int width, int height, long[] bits) {
+        int header = 2 + varintSize(width) + varintSize(height);
+        return header + Math.min(packedSize(width*height), runLengthSize(bits));
+    }
+
+    /**
+     * reads a board written by <b>write</b>, of at most
+     * <b>DEFAULT_MAX_CELLS</b> cells
+     *
+     * @param in
+     *  the buffer, whose position is moved after the encoding
+     * @return the board
+     * @throws IllegalArgumentException if the buffer does
+     *  not contain a valid board
+     */
+    public static GameModel readModel(ByteBuffer in) {
+        return readModel(in, DEFAULT_MAX_CELLS);
+    }
+
+    /**
+     * reads a board written by <b>write</b>
+     *
+     * @param in
+     *  the buffer, whose position is moved after the encoding
+     * @param maxCells
+     *  the largest number of cells accepted, at most
+     *  <b>MAX_CELLS</b>
+     * @return the board
+     * @throws IllegalArgumentException if the buffer does
+     *  not contain a valid board of at most maxCells cells
+     */
+    public static GameModel readModel(ByteBuffer in, int maxCells) {
+        int[] header = readHeader(in, 0, maxCells);
+        return new GameModel(header[0], header[1], readCells(in, header));
+    }
+
+    /**
+     * reads a solution written by <b>write</b>, of at most
+     * <b>DEFAULT_MAX_CELLS</b> cells
+     *
+     * @param in
+     *  the buffer, whose position is moved after the encoding
+     * @return the solution, complete
+     * @throws IllegalArgumentException if the buffer does
+     *  not contain a valid solution
+     */
+    public static Solution readSolution(ByteBuffer in) {
+        return readSolution(in, DEFAULT_MAX_CELLS);
+    }
+
+    /**
+     * reads a solution written by <b>write</b>
+     *
+     * @param in
+     *  the buffer, whose position is moved after the encoding
+     * @param maxCells
+     *  the largest number of cells accepted, at most
+     *  <b>MAX_CELLS</b>
+     * @return the solution, complete
+     * @throws IllegalArgumentException if the buffer does
+     *  not contain a valid solution of at most maxCells cells
+     */
+    public static Solution readSolution(ByteBuffer in, int maxCells) {
+        int[] header = readHeader(in, SOLUTION, maxCells);
+        return new Solution(header[0], header[1], readCells(in, header));
+    }
+
+    private static void write(ByteBuffer out, int kind, int width, int height, long[] bits, boolean runLength) {
+
+        out.put((byte)VERSION);
+        out.put((byte)(kind | (runLength ? RUN_LENGTH : 0)));
+        putVarint(out, width);
+        putVarint(out, height);
+
+        int cells = width*height;
+        if(runLength) {
+            putVarint(out, Bits.count(bits));
+            int previous = -1;
+            for(int w = 0; w < bits.length; w++){
+                long word = bits[w];
+                while(word != 0L){
+                    int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                    putVarint(out, index - previous - 1);
+                    previous = index;
+                    word &= word - 1;
+                }
+            }
+        } else {
+            int size = packedSize(cells);
+            if(out.remaining() < size) {
+                throw new BufferOverflowException();
+            }
+            int full = size >>> 3;
+            out.duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(bits, 0, full);
+            out.position(out.position() + 8*full);
+            for(int b = 8*full; b < size; b++){
+                out.put((byte)(bits[b >>> 3] >>> ((b & 7) << 3)));
+            }
+        }
+    }
+
+    /**
+     * reads the header, checking that it is of the given kind
+     *
+     * @return the width, the height and the flags
+     */
+    private static int[] readHeader(ByteBuffer in, int kind, int maxCells) {
+        if(maxCells < 1 || maxCells > MAX_CELLS) {
+            throw new IllegalArgumentException("Wrong limit " + maxCells);
+        }
+        try{
+            int version = in.get() & 0xFF;
+            if(version != VERSION) {
+                throw new IllegalArgumentException("Unsupported version " + version);
+            }
+            int flags = in.get() & 0xFF;
+            if((flags & ~(SOLUTION | RUN_LENGTH)) != 0 || (flags & SOLUTION) != kind) {
+                throw new IllegalArgumentException("Invalid flags " + flags);
+            }
+            int width = getVarint(in);
+            int height = getVarint(in);
+            if(width < 1 || height < 1 || (long)width*height > maxCells) {
+                throw new IllegalArgumentException("Wrong dimensions " + width + "x" + height);
+            }
+            return new int[] {width, height, flags};
+        } catch(BufferUnderflowException e){
+            throw new IllegalArgumentException("Truncated header");
+        }
+    }
+
+    private static long[] readCells(ByteBuffer in, int[] header) {
+
+        int cells = header[0]*header[1];
+        long[] bits;
+        try{
+            if((header[2] & RUN_LENGTH) != 0) {
+                int count = getVarint(in);
+                if(count > cells) {
+                    throw new IllegalArgumentException("Too many cells set: " + count);
+                }
+                // each cell set takes at least one byte: check
+                // it before allocating from the header
+                if(count > in.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                bits = new long[Bits.words(cells)];
+                long index = -1;
+                for(int k = 0; k < count; k++){
+                    index += getVarint(in) + 1L;
+                    if(index >= cells) {
+                        throw new IllegalArgumentException("Cell out of the board: " + index);
+                    }
+                    Bits.set(bits, (int)index);
+                }
+            } else {
+                int size = packedSize(cells);
+                if(in.remaining() < size) {
+                    throw new BufferUnderflowException();
+                }
+                bits = new long[Bits.words(cells)];
+                int full = size >>> 3;
+                in.duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(bits, 0, full);
+                in.position(in.position() + 8*full);
+                for(int b = 8*full; b < size; b++){
+                    bits[b >>> 3] |= (in.get() & 0xFFL) << ((b & 7) << 3);
+                }
+                if((cells & 63) != 0 && (bits[bits.length - 1] >>> (cells & 63)) != 0L) {
+                    throw new IllegalArgumentException("Cells set out of the board");
+                }
+            }
+        } catch(BufferUnderflowException e){
+            throw new IllegalArgumentException("Truncated cells");
+        }
+        return bits;
+    }
+
+    private static int packedSize(int cells) {
+        return (cells + 7) >>> 3;
+    }
+
+    /**
+     * returns the number of bytes of the run-length
+     * encoding of the cells
+     */
+    private static int runLengthSize(long[] bits) {
+        int size = varintSize(Bits.count(bits));
+        int previous = -1;
+        for(int w = 0; w < bits.length; w++){
+            long word = bits[w];
+            while(word != 0L){
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                size += varintSize(index - previous - 1);
+                previous = index;
+                word &= word - 1;
+            }
+        }
+        return size;
+    }
+
+    private static int varintSize(int value) {
+        // 1 byte per 7 significant bits, at least 1
+        return (31 - Integer.numberOfLeadingZeros(value | 1))/7 + 1;
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while((value & ~0x7F) != 0){
+            out.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte)value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7){
+            byte b = in.get();
+            if(shift == 28 && (b & 0x70) != 0) {
+                // bits past the 32nd would be dropped
+                throw new IllegalArgumentException("Varint too large");
+            }
+            value |= (b & 0x7F) << shift;
+            if(b >= 0) {
+                if(value < 0) {
+                    throw new IllegalArgumentException("Varint too large");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+}
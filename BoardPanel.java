@@ -0,0 +1,263 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * The class <b>BoardPanel</b> draws the board of the game as a single
+ * component, instead of one button per dot: a 100x100 board is one
+ * component, not 10,000.
+ *
+ * Each dot is drawn from the model in one of four states: lit or dark,
+ * selected or not by the solution, with the images of an
+ * <b>IconLoader</b>. Only the cells inside the clip are painted,
+ * so painting costs in proportion to the pixels redrawn. A click is
+ * mapped to its cell by dividing its coordinates by the size of a cell;
+ * the action listeners are then notified, and <b>getRow</b> and
+ * <b>getColumn</b> give the dot that was clicked.
+ */
+public class BoardPanel extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the preferred size of a cell. The icons are scaled
+     * to the cells, so the layout does not depend on
+     * whether they are decoded when the board is built
+     */
+    private static final int CELL_SIZE = 30;
+
+    /**
+     * provides the images of the dots
+     */
+    private IconLoader icons;
+
+    /**
+     * Reference to the model of the game
+     */
+    private GameModel gameModel;
+
+    /**
+     * true if the dots selected by the solution are shown
+     */
+    private boolean hintsShown;
+
+    /**
+     * The row and the column of the last click
+     */
+    private int row;
+    private int column;
+
+    /**
+     * Constructor used for initializing the board.
+     *
+     * @param gameModel
+     *            the model of the game
+     */
+    public BoardPanel(GameModel gameModel) {
+
+        if(gameModel == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        this.gameModel = gameModel;
+        hintsShown = false;
+        row = -1;
+        column = -1;
+
+        icons = IconLoader.getGlobal();
+        if(!icons.isDone()) {
+            // the discs are drawn until then
+            icons.whenDone(() -> SwingUtilities.invokeLater(this::repaint));
+        }
+        setPreferredSize(new Dimension(CELL_SIZE*gameModel.getWidth(), CELL_SIZE*gameModel.getHeight()));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            private int pressed = -1;
+
+            public void mousePressed(MouseEvent e) {
+                pressed = SwingUtilities.isLeftMouseButton(e) ? cellAt(e.getX(), e.getY()) : -1;
+            }
+
+            public void mouseReleased(MouseEvent e) {
+                // as with a button, the click is on the cell
+                // where the mouse was both pressed and released
+                if(pressed >= 0 && pressed == cellAt(e.getX(), e.getY())) {
+                    row = pressed / gameModel.getWidth();
+                    column = pressed % gameModel.getWidth();
+                    fireActionPerformed();
+                }
+                pressed = -1;
+            }
+        };
+        addMouseListener(mouse);
+    }
+
+    /**
+     * Adds a listener notified each time a dot is clicked
+     *
+     * @param l
+     *            the listener
+     */
+    public void addActionListener(ActionListener l) {
+        listenerList.add(ActionListener.class, l);
+    }
+
+    /**
+     * Removes a listener added by addActionListener
+     *
+     * @param l
+     *            the listener
+     */
+    public void removeActionListener(ActionListener l) {
+        listenerList.remove(ActionListener.class, l);
+    }
+
+    private void fireActionPerformed() {
+        ActionEvent e = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, "click");
+        for(ActionListener l : listenerList.getListeners(ActionListener.class)){
+            l.actionPerformed(e);
+        }
+    }
+
+    /**
+     * Getter method for the row of the last dot clicked.
+     *
+     * @return the row of the last click, -1 if there was none
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Getter method for the column of the last dot clicked.
+     *
+     * @return the column of the last click, -1 if there was none
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * shows or hides the dots selected by the solution,
+     * redrawing the whole board if that changes
+     *
+     * @param hintsShown
+     *            true to show the solution
+     */
+    public void setHintsShown(boolean hintsShown) {
+        if(this.hintsShown != hintsShown) {
+            this.hintsShown = hintsShown;
+            repaint();
+        }
+    }
+
+    /**
+     * redraws the given dots only
+     *
+     * @param dirty
+     *            a bit vector of the dots, in the order
+     *            of <b>GameModel.takeDirty</b>
+     */
+    public void repaintCells(long[] dirty) {
+        int size = cellSize();
+        int x0 = originX(size);
+        int y0 = originY(size);
+        for(int w = 0; w < dirty.length; w++){
+            long word = dirty[w];
+            while(word != 0L){
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                // the RepaintManager merges these rectangles
+                repaint(x0 + (index % gameModel.getWidth())*size,
+                        y0 + (index / gameModel.getWidth())*size, size, size);
+                word &= word - 1;
+            }
+        }
+    }
+
+    protected void paintComponent(Graphics g) {
+
+        Rectangle clip = g.getClipBounds();
+        if(clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int size = cellSize();
+        BufferedImage[] images = icons.getImages(size, getGraphicsConfiguration());
+        int x0 = originX(size);
+        int y0 = originY(size);
+        int width = gameModel.getWidth();
+        int height = gameModel.getHeight();
+
+        // only the cells which intersect the clip
+        int firstColumn = Math.max(0, (clip.x - x0)/size);
+        int lastColumn = Math.min(width - 1, (clip.x + clip.width - 1 - x0)/size);
+        int firstRow = Math.max(0, (clip.y - y0)/size);
+        int lastRow = Math.min(height - 1, (clip.y + clip.height - 1 - y0)/size);
+
+        for(int i = firstRow; i <= lastRow; i++){
+            for(int j = firstColumn; j <= lastColumn; j++){
+                boolean selected = hintsShown && gameModel.solutionSelects(i,j);
+                int type;
+                if(gameModel.isON(i,j)) {
+                    type = (selected ? IconLoader.LIT_SOL : IconLoader.LIT);
+                } else {
+                    type = (selected ? IconLoader.DARK_SOL : IconLoader.DARK);
+                }
+                g.drawImage(images[type], x0 + j*size, y0 + i*size, null);
+            }
+        }
+    }
+
+    /**
+     * returns the size of the square cells which fit
+     * the current size of the component
+     */
+    private int cellSize() {
+        int fit = Math.min(getWidth()/gameModel.getWidth(), getHeight()/gameModel.getHeight());
+        return Math.max(fit, 1);
+    }
+
+    /**
+     * the board is centered in the component
+     */
+    private int originX(int size) {
+        return Math.max(0, (getWidth() - size*gameModel.getWidth())/2);
+    }
+
+    private int originY(int size) {
+        return Math.max(0, (getHeight() - size*gameModel.getHeight())/2);
+    }
+
+    /**
+     * returns the index of the dot at the point (x,y),
+     * -1 if the point is not on the board
+     */
+    private int cellAt(int x, int y) {
+        int size = cellSize();
+        x -= originX(size);
+        y -= originY(size);
+        if(x < 0 || y < 0) {
+            return -1;
+        }
+        int j = x/size;
+        int i = y/size;
+        if(i >= gameModel.getHeight() || j >= gameModel.getWidth()) {
+            return -1;
+        }
+        return i*gameModel.getWidth() + j;
+    }
+
+}
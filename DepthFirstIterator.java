@@ -0,0 +1,143 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The class <b>DepthFirstIterator</b> finds the solutions to the
+ * <b>Lights Out</b> game with a Depth-First Search, using the same
+ * <b>stillPossible</b>/<b>finish</b> pruning as the Breadth-First
+ * Search of <b>LightsOut.solve</b>.
+ *
+ * The search works on a single instance of <b>Solution</b>: a branch
+ * is explored by setting its values in place, and taken back with
+ * <b>Solution.truncate</b>. The positions where both values were
+ * possible are kept on a stack of ints. So the memory used by the
+ * search is O(width*height), however many solutions there are; only
+ * the solutions returned by <b>next</b> are copies.
+ */
+public class DepthFirstIterator implements Iterator<Solution> {
+
+    /**
+     * reference to the GameModel instance
+     */
+    private GameModel model;
+
+    /**
+     * the partial solution being explored
+     */
+    private Solution solution;
+
+    /**
+     * the number of positions specified in solution
+     */
+    private int index;
+
+    /**
+     * the positions at which the value true was tried,
+     * and false remains to be tried
+     */
+    private int[] stack;
+
+    /**
+     * the number of positions on the stack
+     */
+    private int top;
+
+    /**
+     * true if the search is over
+     */
+    private boolean done;
+
+    /**
+     * the next solution, null if it has not been found yet
+     */
+    private Solution next;
+
+    /**
+     * Constructor. Creates an iterator over all the
+     * solutions of the game in the state specified
+     * by the model.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     */
+    public DepthFirstIterator(GameModel model) {
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        this.model = model;
+        solution = new Solution(model.getWidth(), model.getHeight());
+        index = 0;
+        stack = new int[model.getWidth()*model.getHeight()];
+        top = 0;
+        done = false;
+        next = null;
+    }
+
+    public boolean hasNext() {
+
+        while(next == null && !done){
+            if(descend()) {
+                next = new Solution(solution);
+            }
+            backtrack();
+        }
+        return next != null;
+    }
+
+    public Solution next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException("No more solutions");
+        }
+        Solution result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * extends the current partial solution, trying true
+     * first, until it is complete or a dead end
+     *
+     * @return true if the solution is complete
+     */
+    private boolean descend() {
+
+        while(!solution.isReady()){
+            boolean withTrue = solution.stillPossible(true,model);
+            boolean withFalse = solution.stillPossible(false,model);
+            if(withTrue && withFalse) {
+                stack[top++] = index;
+                solution.setNext(true);
+                index++;
+            } else if (withTrue || withFalse) {
+                solution.setNext(withTrue);
+                if(!solution.finish(model)){
+                    return false;
+                }
+                // finish completes the solution
+                index = stack.length;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * goes back to the last position where false remains
+     * to be tried, and sets it to false
+     */
+    private void backtrack() {
+
+        if(top == 0) {
+            done = true;
+            return;
+        }
+        index = stack[--top];
+        solution.truncate(index);
+        solution.setNext(false);
+        index++;
+    }
+
+}
@@ -5,6 +5,10 @@ import java.awt.event.ItemEvent;
 //import javax.swing.event.ChangeEvent;
 //import javax.swing.event.ChangeListener;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
 import javax.swing.*;
 
 
@@ -28,6 +32,16 @@ public class GameController implements ActionListener, ItemListener {//ChangeLis
      * Reference to the model of the game
      */
     private GameModel gameModel;
+
+    /**
+     * Computes the solutions off the event thread
+     */
+    private AsyncSolver solver;
+
+    /**
+     * The time given to compute a solution, in milliseconds
+     */
+    private static final long SOLVE_TIMEOUT_MILLIS = 10000;
  
 
     /**
@@ -41,6 +55,7 @@ public class GameController implements ActionListener, ItemListener {//ChangeLis
      */
     public GameController(int width, int height) {
         gameModel = new GameModel(width, height);
+        solver = new AsyncSolver();
         gameView = new GameView(gameModel, this);
         update();
     }
@@ -56,9 +71,9 @@ public class GameController implements ActionListener, ItemListener {//ChangeLis
 
     public void actionPerformed(ActionEvent e) {
         
-        if (e.getSource() instanceof GridButton) {
-            int row = (((GridButton)(e.getSource())).getRow());
-            int column = ((GridButton)(e.getSource())).getColumn();
+        if (e.getSource() instanceof BoardPanel) {
+            int row = ((BoardPanel)(e.getSource())).getRow();
+            int column = ((BoardPanel)(e.getSource())).getColumn();
             gameModel.click(row,column);
               
             update();
@@ -109,9 +124,45 @@ public class GameController implements ActionListener, ItemListener {//ChangeLis
         update();
     }
 
+    /**
+     * Tells the user why the solution of the
+     * board could not be computed. A solve which
+     * was cancelled by a newer one is ignored.
+     */
+    private void solveFailed(Throwable e){
+        if(e instanceof CancellationException) {
+            // a newer solve took over
+            return;
+        }
+        if(e instanceof IllegalStateException) {
+            gameView.solutionFailed("This board has too many solutions to look for the shortest one.");
+        } else if(e instanceof TimeoutException) {
+            gameView.solutionFailed("The solution took too long to compute.");
+        } else {
+            gameView.solutionFailed("The solution could not be computed: " + e);
+        }
+    }
+
+    /**
+     * Updates the view. If the solution is shown and is no
+     * longer current, a new one is computed in the background
+     * and the view is updated again when it arrives, unless
+     * the board has changed in the meantime. If it can't be
+     * computed, the user is told and the solution is hidden.
+     */
     private void update(){
-        if(gameView.solutionShown()) {
-            gameModel.setSolution();
+        if(gameView.solutionShown() && !gameModel.isSolutionCurrent()) {
+            final long version = gameModel.getVersion();
+            solver.solve(gameModel, SOLVE_TIMEOUT_MILLIS).whenComplete((solution, e) ->
+                SwingUtilities.invokeLater(() -> {
+                    if(e == null) {
+                        if(gameModel.setSolution(solution, version)) {
+                            gameView.update();
+                        }
+                    } else if(version == gameModel.getVersion()) {
+                        solveFailed(e instanceof CompletionException ? e.getCause() : e);
+                    }
+                }));
         } 
             
         gameView.update();
@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Random;
 
 public class GameModel {
@@ -13,10 +14,12 @@ public class GameModel {
     private  int heightOfGame;
  
     /**
-     * A 2 dimentionnal array of widthOfGame*heightOfGame 
-     * recording the state of the game. FALSE is OFF.
+     * A bit vector of widthOfGame*heightOfGame bits 
+     * recording the state of the game, row by row: 
+     * bit i*widthOfGame+j is the dot at row i and column j. 
+     * 0 is OFF.
      */
-    private boolean[][] model;
+    private long[] model;
 
 
    /**
@@ -40,6 +43,32 @@ public class GameModel {
      */
     private Solution solution;
 
+   /** 
+     * true if solution is a shortest solution of the
+     * board in its current state
+     */
+    private boolean solutionCurrent;
+
+   /** 
+     * Incremented each time the board changes, so that
+     * a solution computed for an earlier state of the
+     * board can be recognized
+     */
+    private long version;
+
+   /** 
+     * A bit vector of the dots whose state or hint has
+     * changed since the last call to takeDirty, in the
+     * same order as model
+     */
+    private long[] dirty;
+
+   /** 
+     * The shortest solutions of the last boards solved,
+     * shared by all the games
+     */
+    private static final SolutionCache solutionCache = new SolutionCache(SolutionCache.DEFAULT_CAPACITY);
+
     /**
      * Constructor to initialize the model to a given size of board.
      * 
@@ -52,13 +81,66 @@ public class GameModel {
      */
     public GameModel(int width, int height) {
         
+        // default long value = 0 == out
+        this(width, height, new long[Bits.words(width*height)]);
+    }
+
+    /**
+     * Constructor to initialize the model to a given board.
+     *
+     * @param width
+     *            the width of the board
+     * @param height
+     *            the height of the board
+     * @param bits
+     *            the state of the board, in the order of
+     *            toBits, which the model now owns
+     */
+    GameModel(int width, int height, long[] bits) {
+
+        if(bits.length != Bits.words(width*height)) {
+            throw new IllegalArgumentException("Wrong number of words: " + bits.length);
+        }
+        int cells = width*height;
+        if((cells & 63) != 0 && (bits[bits.length - 1] >>> (cells & 63)) != 0L) {
+            throw new IllegalArgumentException("Bits set outside of the board");
+        }
         widthOfGame = width;
         heightOfGame = height;
-        // default boolean value = false == out
-        model = new boolean[heightOfGame][widthOfGame]; 
-        numberOut = widthOfGame*heightOfGame;
+        model = bits;
+        numberOut = cells - Bits.count(model);
         numberOfSteps = 0;
         solution = null;
+        solutionCurrent = false;
+        version = 0;
+        dirty = new long[model.length];
+        Bits.fill(dirty, cells);
+    }
+
+    /**
+     * Copy constructor. The board of the copy is
+     * independent of the board of other; the copy
+     * has no solution.
+     *
+     * @param other
+     *            the model to copy
+     */
+    public GameModel(GameModel other) {
+
+        if(other == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        widthOfGame = other.widthOfGame;
+        heightOfGame = other.heightOfGame;
+        model = other.model.clone();
+        numberOut = other.numberOut;
+        numberOfSteps = other.numberOfSteps;
+        solution = null;
+        solutionCurrent = false;
+        version = other.version;
+        dirty = new long[model.length];
+        Bits.fill(dirty, widthOfGame*heightOfGame);
     }
 
 
@@ -98,7 +180,7 @@ public class GameModel {
         if(j < 0 || j >= widthOfGame) {
             throw new IllegalArgumentException("Error, wrong column: " + j);
         } 
-        return model[i][j];
+        return Bits.get(model, i*widthOfGame + j);
     }
 
     /**
@@ -107,13 +189,12 @@ public class GameModel {
      */
     public void reset(){
 
-        for(int i = 0; i < heightOfGame; i++){
-            for(int j = 0; j < widthOfGame; j++){
-                model[i][j] = false;
-            }
-        }
+        Arrays.fill(model, 0L);
         numberOut = widthOfGame*heightOfGame;
         numberOfSteps = 0;
+        solutionCurrent = false;
+        version++;
+        Bits.fill(dirty, widthOfGame*heightOfGame);
     }
 
 
@@ -134,7 +215,18 @@ public class GameModel {
         if(j < 0 || j >= heightOfGame) {
             throw new IllegalArgumentException("Error, wrong height: " + j);
         } 
-        model[j][i] = value;
+        if(value) {
+            Bits.set(model, j*widthOfGame + i);
+        } else {
+            Bits.clear(model, j*widthOfGame + i);
+        }
+        Bits.set(dirty, j*widthOfGame + i);
+        if(solutionCurrent) {
+            // its hints are no longer shown
+            markDirty(solution);
+        }
+        solutionCurrent = false;
+        version++;
     }
 
 
@@ -151,7 +243,7 @@ public class GameModel {
                 if (i>0) {
                     b.append(",\t");
                 }
-                b.append(model[j][i]);
+                b.append(Bits.get(model, j*widthOfGame + i));
             }
             b.append("]\n");
         }
@@ -164,11 +256,9 @@ public class GameModel {
      */
     public void randomize(){
 
-      for(int i = 0; i < heightOfGame; i++){
-            for(int j = 0; j < widthOfGame; j++){
-                model[i][j] = true;
-            }
-        }
+        solutionCurrent = false;
+        Bits.fill(model, heightOfGame*widthOfGame);
+        Bits.fill(dirty, heightOfGame*widthOfGame);
 
         numberOut = 0;
 
@@ -206,29 +296,108 @@ public class GameModel {
      */   
     public void click(int i, int j){
         
-        
-        toggle(i,j);
+        if(i < 0 || i >= heightOfGame) {
+            throw new IllegalArgumentException("Error, wrong row: " + i);
+        }
+        if(j < 0 || j >= widthOfGame) {
+            throw new IllegalArgumentException("Error, wrong column: " + j);
+        } 
+        int index = i*widthOfGame + j;
+
+        toggle(index);
         if(i>0) {
-            toggle(i-1,j);            
+            toggle(index - widthOfGame);            
         }
         if(j>0) {
-            toggle(i,j-1);            
+            toggle(index - 1);            
         }
         if(i< heightOfGame -1) {
-            toggle(i+1,j);            
+            toggle(index + widthOfGame);            
         }
         if(j< widthOfGame -1) {
-            toggle(i,j+1);            
+            toggle(index + 1);            
         }
 
         numberOfSteps++;
+        version++;
+
+        if(solutionCurrent && solution != null) {
+            updateSolution(index);
+        }
+    }
+
+   /**
+     * Keeps the solution current after a click on the
+     * dot at index. Clicking that dot again undoes the
+     * click, so the old solution with that dot flipped
+     * solves the new board, and it is the only one if
+     * the null space of the board is trivial. Otherwise
+     * finding the shortest solution is a search, which
+     * is left to the next call to setSolution (or to an
+     * <b>AsyncSolver</b>): the solution is no longer
+     * current and its hints are marked dirty.
+     * An unsolvable board stays unsolvable.
+     */
+    private void updateSolution(int index){
+        LinearSolver solver = KernelRegistry.peek(widthOfGame, heightOfGame);
+        if(solver == null || solver.getNullity() > 0) {
+            markDirty(solution);
+            solutionCurrent = false;
+            return;
+        }
+        long[] bits = solution.toBits();
+        Bits.flip(bits, index);
+        // only the hint of that dot changes
+        Bits.set(dirty, index);
+        solution = new Solution(widthOfGame, heightOfGame, bits);
     }
 
  
 
-    private void toggle(int i, int j){        
-        numberOut = (model[i][j])?(numberOut+1):(numberOut-1);
-        model[i][j] = !model[i][j];
+    private void toggle(int index){        
+        long bit = 1L << index;
+        numberOut = ((model[index >>> 6] & bit) != 0)?(numberOut+1):(numberOut-1);
+        model[index >>> 6] ^= bit;
+        dirty[index >>> 6] |= bit;
+    }
+
+   /**
+     * marks dirty the dots given by bits
+     */
+    private void markDirty(long[] bits){
+        Bits.or(dirty, bits);
+    }
+
+    private void markDirty(Solution solution){
+        if(solution != null) {
+            markDirty(solution.toBits());
+        }
+    }
+
+   /**
+     * returns a copy of the state of the game, as a bit 
+     * vector of widthOfGame*heightOfGame bits: bit 
+     * i*widthOfGame+j is the dot at row i and column j
+     *
+     * @return the bits of the model
+     */
+    long[] toBits(){
+        return model.clone();
+    }
+
+   /**
+     * returns the dots which changed since the last call,
+     * either their state or their hint in the current
+     * solution, and marks them all clean. A new, reset or
+     * randomized board is entirely dirty.
+     *
+     * @return a bit vector of widthOfGame*heightOfGame bits,
+     *  in the same order as toBits
+     */
+    public long[] takeDirty(){
+        long[] changed = dirty;
+        dirty = new long[changed.length];
+        return changed;
     }
 
     /**
@@ -252,11 +421,77 @@ public class GameModel {
 
    /**
     * computes a shortest solution for the current game
-    * and records it in the variable solution
+    * and records it in the variable solution. Boards
+    * which were already solved are not solved again,
+    * and the solution is not recomputed if it was kept
+    * current since the last call.
+    *
+    * @throws IllegalStateException
+    *  if the board has too many solutions to search
+    *  them for the shortest one (see 
+    *  <b>LightsOut.solveShortest</b>)
     */ 
     public void setSolution(){
 
-        solution = LightsOut.solveShortest(this);
+        if(!solutionCurrent) {
+            solution = solutionCache.solveShortest(this);
+            solutionCurrent = true;
+            markDirty(solution);
+        }
+    }
+
+   /**
+    * records a shortest solution computed elsewhere,
+    * typically by an <b>AsyncSolver</b>, for the board
+    * as it was at the given version. The solution is
+    * dropped if the board has changed since.
+    *
+    * @param solution
+    *            a shortest solution, null if the board
+    *            is unsolvable
+    * @param version
+    *            the version of the board that was solved
+    * @return true if the solution was recorded
+    */ 
+    public boolean setSolution(Solution solution, long version){
+
+        if(version != this.version) {
+            return false;
+        }
+        this.solution = solution;
+        solutionCurrent = true;
+        markDirty(solution);
+        return true;
+    }
+
+   /**
+     * Returns true if the solution recorded in the model
+     * solves the board in its current state
+     * 
+     * @return true if the solution is current
+     */   
+    public boolean isSolutionCurrent(){
+        return solutionCurrent;
+    }
+
+   /**
+     * Getter method for the version of the board, which
+     * changes each time the board changes
+     * 
+     * @return the current version
+     */   
+    public long getVersion(){
+        return version;
+    }
+
+   /**
+     * Getter method for the cache of solutions 
+     * used by setSolution
+     * 
+     * @return the cache of solutions
+     */   
+    public static SolutionCache getSolutionCache(){
+        return solutionCache;
     }
 
    /**
@@ -267,12 +502,13 @@ public class GameModel {
      *            the row of the dot in the model
      * @param j
      *            the column of the dot in the model
-     * @return true if solution != null and solution.get(j,i)==true
+     * @return true if solution is current, solution != null 
+     *  and solution.get(j,i)==true
      *
      */   
     public boolean solutionSelects(int i, int j){
         
-        if(solution == null) {
+        if(!solutionCurrent || solution == null) {
             return false;
         } else {
             return solution.get(j,i);
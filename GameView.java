@@ -6,7 +6,7 @@ import javax.swing.*;
 
 /**
  * The class <b>GameView</b> provides the current view of the entire Game. It extends
- * <b>JFrame</b> and lays out a matrix of <b>GridButton</b> (the actual game) and 
+ * <b>JFrame</b> and lays out a <b>BoardPanel</b> (the actual game) and 
  * two instances of JButton. The action listener for the buttons is the controller.
  *
  * @author Guy-Vincent Jourdan, University of Ottawa
@@ -16,9 +16,9 @@ public class GameView extends JFrame {
 
 
     /**
-     * The board is a two dimensionnal array of GridButton instances
+     * The board, drawn as a single component
      */
-    private GridButton[][] board;
+    private BoardPanel board;
 
  
     /**
@@ -33,6 +33,13 @@ public class GameView extends JFrame {
     private JLabel nbreOfStepsLabel;
 
     private JCheckBox buttonCBSolution;
+
+    /**
+     * The status of the ``solution'' checkbox at the last
+     * update: when it changes, every hint has to be redrawn
+     */
+    private boolean hintsShown;
+
     /**
      * Constructor used for initializing the Frame
      * 
@@ -58,17 +65,11 @@ public class GameView extends JFrame {
         GridBagConstraints pc = new GridBagConstraints();        
         
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 10, 20));
-        board = new GridButton[gameModel.getWidth()][gameModel.getHeight()];
-
-        for (int j = 0; j < gameModel.getHeight(); j++) {
-            for (int i = 0; i < gameModel.getWidth(); i++) {
-                board[i][j] = new GridButton(i,j);
-                board[i][j].addActionListener(gameController);
-                pc.gridx = i;
-                pc.gridy = j;
-                panel.add(board[i][j],pc);
-            }
-        }
+        board = new BoardPanel(gameModel);
+        board.addActionListener(gameController);
+        pc.gridx = 0;
+        pc.gridy = 0;
+        panel.add(board,pc);
         c.gridx = 0;
         c.gridy = 0;
 
@@ -84,6 +85,7 @@ public class GameView extends JFrame {
 
         buttonCBSolution = new JCheckBox("Solution");        
         buttonCBSolution.setSelected(false);
+        hintsShown = false;
         buttonCBSolution.addItemListener(gameController);
 
         JButton buttonExit = new JButton("Quit");
@@ -138,22 +140,38 @@ public class GameView extends JFrame {
     }
 
     /**
-     * updates the status of the board's GridButton instances based 
-     * on the current game model, then redraws the view
+     * redraws the board based on the current game model. Only 
+     * the dots that the model reports as changed are redrawn,
+     * unless the ``solution'' checkbox changed since the last
+     * update.
      */
 
     public void update(){
-        for(int i = 0; i < gameModel.getWidth(); i++){
-            for(int j = 0; j < gameModel.getHeight(); j++){
-                board[i][j].setState(gameModel.isON(j,i), solutionShown() ? gameModel.solutionSelects(j,i) : false);
-            }
+        long[] dirty = gameModel.takeDirty();
+        if(solutionShown() != hintsShown) {
+            hintsShown = solutionShown();
+            board.setHintsShown(hintsShown);
+        } else {
+            board.repaintCells(dirty);
         }
         if(gameModel.getNumberOfSteps() > 1) {
             nbreOfStepsLabel.setText("Number of steps: " + gameModel.getNumberOfSteps());
         } else {
             nbreOfStepsLabel.setText("Number of step: " + gameModel.getNumberOfSteps());
         }
-        repaint();
+    }
+
+    /**
+     * tells the user that the solution could not be
+     * computed, and unchecks the ``solution'' checkbox
+     *
+     * @param message
+     *            the reason
+     */
+
+    public void solutionFailed(String message){
+        JOptionPane.showMessageDialog(this, message, "Solution", JOptionPane.WARNING_MESSAGE);
+        buttonCBSolution.setSelected(false);
     }
 
     /**
@@ -0,0 +1,204 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The class <b>IconLoader</b> provides the images of the four states
+ * of a dot: lit or dark, selected or not by the solution.
+ *
+ * The four icon files are read and decoded in parallel, in the
+ * background, as soon as the loader is created, so that the event
+ * thread never waits for them. Until they are decoded, or if one of
+ * them is missing or unreadable, the dots are drawn as discs instead.
+ *
+ * The images are scaled once per size of cell, to images compatible
+ * with the screen, and then reused by every paint at that size.
+ */
+public class IconLoader {
+
+    public static final int LIT    = 0;
+    public static final int DARK   = 1;
+    public static final int LIT_SOL   = 2;
+    public static final int DARK_SOL  = 3;
+
+    /**
+     * the space around the image of a dot in its cell
+     */
+    private static final int INSET = 2;
+
+    private static IconLoader global;
+
+    /**
+     * the decoded icons of the four states, null
+     * if one of them could not be read
+     */
+    private CompletableFuture<BufferedImage[]> sources;
+
+    /**
+     * the scaled images of the icons, by size of cell
+     */
+    private HashMap<Integer, BufferedImage[]> scaled;
+
+    /**
+     * the generated images, by size of cell
+     */
+    private HashMap<Integer, BufferedImage[]> shapes;
+
+    /**
+     * returns the loader of the icons of the game,
+     * Icons/Light-0.png to Icons/Light-3.png, starting
+     * to load them the first time
+     *
+     * @return the global instance
+     */
+    public static synchronized IconLoader getGlobal() {
+        if(global == null) {
+            global = new IconLoader("Icons/Light-");
+        }
+        return global;
+    }
+
+    /**
+     * Constructor. Starts to load the icons
+     * prefix + type + ".png", for the four types.
+     *
+     * @param prefix
+     *  the path of the icons, without their number
+     */
+    public IconLoader(String prefix) {
+
+        if(prefix == null) {
+            throw new NullPointerException("prefix can't be null");
+        }
+
+        List<CompletableFuture<BufferedImage>> reads = new ArrayList<CompletableFuture<BufferedImage>>();
+        for(int type = 0; type < 4; type++){
+            File file = new File(prefix + type + ".png");
+            reads.add(CompletableFuture.supplyAsync(() -> read(file)));
+        }
+        sources = CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            BufferedImage[] icons = new BufferedImage[reads.size()];
+            for(int type = 0; type < icons.length; type++){
+                icons[type] = reads.get(type).join();
+                if(icons[type] == null) {
+                    return null;
+                }
+            }
+            return icons;
+        });
+        scaled = new HashMap<Integer, BufferedImage[]>();
+        shapes = new HashMap<Integer, BufferedImage[]>();
+    }
+
+    /**
+     * decodes an icon, null if it can't be read
+     */
+    private static BufferedImage read(File file) {
+        if(!file.isFile()) {
+            return null;
+        }
+        try{
+            return ImageIO.read(file);
+        } catch(IOException e){
+            System.out.println("Warning, could not read " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * returns true once the icons are decoded,
+     * or known to be missing
+     *
+     * @return true if the loading is over
+     */
+    public boolean isDone() {
+        return sources.isDone();
+    }
+
+    /**
+     * runs the action once the loading is over, on the
+     * thread which ends it (or right away if it is over)
+     *
+     * @param action
+     *  the action to run
+     */
+    public void whenDone(Runnable action) {
+        sources.thenRun(action);
+    }
+
+    /**
+     * returns the width of the icons, waiting for them
+     * to be decoded
+     *
+     * @return the width of the icons, -1 if they are missing
+     */
+    public int getIconWidth() {
+        BufferedImage[] icons = sources.join();
+        return (icons == null) ? -1 : icons[DARK].getWidth();
+    }
+
+    /**
+     * returns the images of the four states for cells of the
+     * given size: the icons if they are decoded, discs
+     * otherwise. The images are built the first time a size
+     * is asked for.
+     *
+     * @param size
+     *  the size of the square cells
+     * @param gc
+     *  the configuration of the screen, null if unknown
+     * @return
+     *  the images, indexed by LIT, DARK, LIT_SOL, DARK_SOL
+     */
+    public synchronized BufferedImage[] getImages(int size, GraphicsConfiguration gc) {
+
+        if(size < 1) {
+            throw new IllegalArgumentException("Wrong size " + size);
+        }
+
+        BufferedImage[] icons = sources.getNow(null);
+        HashMap<Integer, BufferedImage[]> cache = (icons == null) ? shapes : scaled;
+        BufferedImage[] images = cache.get(size);
+        if(images == null) {
+            images = new BufferedImage[4];
+            int inner = Math.max(size - 2*INSET, 1);
+            for(int type = 0; type < images.length; type++){
+                images[type] = (gc != null)
+                    ? gc.createCompatibleImage(size, size, Transparency.TRANSLUCENT)
+                    : new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = images[type].createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                if(icons != null) {
+                    g.drawImage(icons[type], INSET, INSET, inner, inner, null);
+                } else {
+                    drawShape(g, type, size, inner);
+                }
+                g.dispose();
+            }
+            cache.put(size, images);
+        }
+        return images;
+    }
+
+    private static void drawShape(Graphics2D g, int type, int size, int inner) {
+        g.setColor((type == LIT || type == LIT_SOL) ? new Color(255, 214, 64) : new Color(96, 96, 96));
+        g.fillOval(INSET, INSET, inner, inner);
+        if(type == LIT_SOL || type == DARK_SOL) {
+            g.setColor(Color.RED);
+            g.fillOval(size/2 - inner/6, size/2 - inner/6, inner/3, inner/3);
+        }
+    }
+
+}
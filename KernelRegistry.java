@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The class <b>KernelRegistry</b> gives access to the
+ * <b>LinearSolver</b> of each size of board. The reduction of the
+ * toggle matrix only depends on the dimensions of the board, so it is
+ * computed once per width and height, and kept in memory.
+ *
+ * If the system property <b>lightsout.cache.dir</b> gives a directory,
+ * the solvers are also saved there, one binary file per size of board,
+ * and mapped back in by the next processes instead of being computed
+ * again. The directory is created readable by the user only. Without
+ * the property (or with an empty value), nothing is written to disk.
+ *
+ * The files are read and written outside of the map of the solvers,
+ * so a slow disk never holds up the other sizes; two threads asking
+ * for a new size at the same time may both compute its solver, and
+ * the first one kept is returned to both.
+ *
+ * A file holds the magic number, the solver (see
+ * <b>LinearSolver.write</b>) and the CRC-32 of the solver. A file
+ * which is truncated, damaged or of another version is ignored, and
+ * replaced by the solver computed instead.
+ */
+public class KernelRegistry {
+
+    /**
+     * the system property giving the cache directory
+     */
+    public static final String CACHE_DIR_PROPERTY = "lightsout.cache.dir";
+
+    /**
+     * first bytes of the files: "LOK" and the version of the format
+     */
+    private static final int MAGIC = 0x4C4F4B02;
+
+    private static final ConcurrentHashMap<Long,LinearSolver> solvers = new ConcurrentHashMap<Long,LinearSolver>();
+
+    private KernelRegistry() {
+    }
+
+    /**
+     * returns the solver for boards of size <b>widthxheight</b>,
+     * from memory, from the cache directory, or computing it
+     *
+     * @param width
+     *  the width of the board
+     * @param height
+     *  the height of the board
+     * @return the solver for that size of board
+     */
+    public static LinearSolver get(int width, int height) {
+
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("Wrong dimensions " + width + "x" + height);
+        }
+
+        long key = ((long)width << 32) | height;
+        LinearSolver solver = solvers.get(key);
+        if(solver != null) {
+            return solver;
+        }
+
+        Path file = file(width, height);
+        solver = (file == null) ? null : load(file, width, height);
+        boolean computed = (solver == null);
+        if(computed) {
+            solver = new LinearSolver(width, height);
+        }
+        LinearSolver previous = solvers.putIfAbsent(key, solver);
+        if(previous != null) {
+            return previous;
+        }
+        if(computed && file != null) {
+            save(file, solver);
+        }
+        return solver;
+    }
+
+    /**
+     * returns the solver for boards of size <b>widthxheight</b>
+     * if it is already in memory, without loading or
+     * computing it
+     *
+     * @param width
+     *  the width of the board
+     * @param height
+     *  the height of the board
+     * @return the solver for that size of board, null
+     *  if it is not in memory
+     */
+    public static LinearSolver peek(int width, int height) {
+        return solvers.get(((long)width << 32) | height);
+    }
+
+    /**
+     * returns the solver for boards of the size
+     * of the model
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return the solver for that size of board
+     */
+    public static LinearSolver get(GameModel model) {
+        if(model == null){
+            throw new NullPointerException("Model is null");
+        }
+        return get(model.getWidth(), model.getHeight());
+    }
+
+    /**
+     * forgets the solvers kept in memory. The
+     * files are not removed.
+     */
+    public static void clear() {
+        solvers.clear();
+    }
+
+    /**
+     * returns the file of the solver, null if
+     * the files are disabled
+     */
+    private static Path file(int width, int height) {
+        String dir = System.getProperty(CACHE_DIR_PROPERTY);
+        if(dir == null || dir.isEmpty()) {
+            return null;
+        }
+        return Paths.get(dir, "kernel-" + width + "x" + height + ".bin");
+    }
+
+    /**
+     * maps the file in and reads the solver, returns null if
+     * there is no file or if it is not valid
+     */
+    private static LinearSolver load(Path file, int width, int height) {
+
+        if(!Files.isRegularFile(file)) {
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(in.remaining() < 8 || in.getInt() != MAGIC) {
+                return null;
+            }
+            int crc = in.getInt(in.limit() - 4);
+            in.limit(in.limit() - 4);
+            if(crc(in) != crc) {
+                return null;
+            }
+            LinearSolver solver = LinearSolver.read(in);
+            if(solver.getWidth() != width || solver.getHeight() != height || in.hasRemaining()) {
+                return null;
+            }
+            return solver;
+        } catch(IOException | IllegalArgumentException e){
+            return null;
+        }
+    }
+
+    /**
+     * writes the solver in a temporary file, then renames it, so
+     * that other processes never see a partial file
+     */
+    private static void save(Path file, LinearSolver solver) {
+
+        Path tmp = null;
+        try{
+            Path dir = file.getParent();
+            if(!Files.isDirectory(dir)) {
+                if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                    Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectories(dir);
+                }
+            }
+            tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            ByteBuffer out = ByteBuffer.allocate(4 + solver.binarySize() + 4);
+            out.putInt(MAGIC);
+            solver.write(out);
+            out.flip().position(4);
+            int crc = crc(out);
+            out.limit(out.capacity()).position(out.capacity() - 4);
+            out.putInt(crc);
+            out.flip();
+            try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)){
+                while(out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch(IOException e){
+            System.out.println("Warning, could not save " + file + ": " + e.getMessage());
+        } finally{
+            if(tmp != null) {
+                try{
+                    Files.deleteIfExists(tmp);
+                } catch(IOException e){
+                    // left for the user to remove
+                }
+            }
+        }
+    }
+
+    /**
+     * returns the CRC-32 of the bytes left in the buffer,
+     * without moving its position
+     */
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return (int)crc.getValue();
+    }
+
+}
@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+
+/**
+ * The class <b>LightChaser</b> solves the <b>Lights Out</b> game
+ * by ``chasing the lights''. Once the presses of the first row are
+ * chosen, the presses of each following row are forced: a cell of
+ * row i can only be fixed by pressing the cell just below it. So
+ * only the 2^width possible first rows have to be tried, and each
+ * try is checked on the last row.
+ *
+ * Each row is stored in a single <b>long</b> (bit j is column j),
+ * so the board can be at most 62 cells wide. Trying a first row
+ * does not allocate anything; only the solutions found are
+ * turned into instances of <b>Solution</b>.
+ */
+public class LightChaser {
+
+    /**
+     * maximum width of the board
+     */
+    public static final int MAX_WIDTH = 62;
+
+    /**
+     * width of the game
+     */
+    private int width;
+
+    /**
+     * height of the game
+     */
+    private int height;
+
+    /**
+     * the bits of the cells of one row
+     */
+    private long mask;
+
+    /**
+     * need[i] has the bits of the cells of row i
+     * which are currently ``off''
+     */
+    private long[] need;
+
+    /**
+     * the presses of the last chase, one row per long
+     */
+    private long[] presses;
+
+    /**
+     * Constructor. Prepares the chase for the game
+     * in the state specified by the model.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     */
+    public LightChaser(GameModel model) {
+
+        if(model == null){
+            throw new NullPointerException("Model is null");
+        }
+        if(model.getWidth() > MAX_WIDTH){
+            throw new IllegalArgumentException("Board too wide: " + model.getWidth());
+        }
+
+        width = model.getWidth();
+        height = model.getHeight();
+        mask = (1L << width) - 1;
+        need = new long[height];
+        presses = new long[height];
+
+        long[] bits = model.toBits();
+        for(int i = 0; i < height; i++){
+            need[i] = ~Bits.extract(bits, i*width, width) & mask;
+        }
+    }
+
+    /**
+     * presses <b>firstRow</b> on the first row, then chases
+     * the lights down to the last row.
+     *
+     * @param firstRow
+     *  the presses of the first row (bit j is column j)
+     * @return true if the presses found solve the game
+     */
+    public boolean chase(long firstRow) {
+
+        long previous = 0L;
+        long current = firstRow;
+        for(int i = 0; i < height; i++){
+            presses[i] = current;
+            long left = (need[i] ^ previous ^ current ^ (current << 1) ^ (current >>> 1)) & mask;
+            previous = current;
+            current = left;
+        }
+        return current == 0L;
+    }
+
+    /**
+     * returns the presses of row <b>i</b> found by the
+     * last call to <b>chase</b>
+     *
+     * @param i
+     *  the row
+     * @return the presses of that row (bit j is column j)
+     */
+    public long getPresses(int i) {
+        return presses[i];
+    }
+
+    /**
+     * builds the Solution found by the last
+     * call to <b>chase</b>
+     *
+     * @return the corresponding Solution
+     */
+    public Solution toSolution() {
+        long[] bits = new long[Bits.words(width*height)];
+        for(int i = 0; i < height; i++){
+            Bits.deposit(bits, i*width, width, presses[i]);
+        }
+        return new Solution(width, height, bits);
+    }
+
+    /**
+     * The method <b>solve</b> finds all the
+     * solutions to the <b>Lights Out</b> game
+     * by chasing the lights for each of the
+     * 2^width possible first rows.
+     *
+     * @return
+     *  an instance of <b>ArrayList&lt;Solution&gt;</b>
+     * containing all the solutions
+     */
+    public ArrayList<Solution> solve() {
+
+        ArrayList<Solution> solutions  = new ArrayList<Solution>();
+        for(long firstRow = 0; firstRow <= mask; firstRow++){
+            if(chase(firstRow)) {
+                solutions.add(toSolution());
+            }
+        }
+        return solutions;
+    }
+
+}
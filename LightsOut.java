@@ -1,9 +1,22 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
  * The class <b>LightsOut</b> launches the game
  *
+ * The solvers of each size of board are kept in memory only, unless
+ * the system property <b>lightsout.cache.dir</b> names a directory:
+ * they are then saved there, and read back by the next launches (see
+ * <b>KernelRegistry</b>), e.g. with
+ * <b>java -Dlightsout.cache.dir=$HOME/.lightsout LightsOut --server</b>.
+ *
  * @author Guy-Vincent Jourdan, University of Ottawa
  */
 public class LightsOut {
@@ -18,6 +31,34 @@ public class LightsOut {
      */
     public static final int DEFAULT_HEIGTH = 8;
 
+    /**
+     * true if the searches print a message for
+     * each solution found
+     */
+    private static volatile boolean verbose = true;
+
+    /**
+     * Turns on or off the message printed by <b>solve</b>
+     * and <b>solveParallel</b> for each solution found.
+     * The counters of <b>SolverStats</b> are kept either way.
+     *
+     * @param value
+     *  true to print the messages (the default)
+     */
+    public static void setVerbose(boolean value){
+        verbose = value;
+    }
+
+    /**
+     * returns true if the searches print a message
+     * for each solution found
+     *
+     * @return true if the messages are printed
+     */
+    public static boolean isVerbose(){
+        return verbose;
+    }
+
     /**
      * The method <b>solve</b> finds all the 
      * solutions to the <b>Lights Out</b> game 
@@ -37,7 +78,8 @@ public class LightsOut {
      * During the computation of the solution, the 
      * method prints out a message each time a new 
      * solution  is found, along with the total time 
-     * it took (in milliseconds) to find that solution.
+     * it took (in milliseconds) to find that solution,
+     * unless it was turned off with <b>setVerbose</b>.
      *
      * @param width
      *  the width of the board
@@ -72,7 +114,10 @@ public class LightsOut {
      * During the computation of the solution, the 
      * method prints out a message each time a new 
      * solution  is found, along with the total time 
-     * it took (in milliseconds) to find that solution.
+     * it took (in milliseconds) to find that solution,
+     * unless it was turned off with <b>setVerbose</b>.
+     * The work done is added to 
+     * <b>SolverStats.getGlobal()</b>.
      *
      * @param model
      *  reference to the GameModel instance
@@ -81,58 +126,264 @@ public class LightsOut {
      * containing all the solutions
      */
     public static ArrayList<Solution> solve(GameModel model){
+        return solve(model, new ArrayQueue<Solution>());
+    }
+
+  /**
+     * The method <b>solve</b> finds all the 
+     * solutions to the <b>Lights Out</b> game 
+     * for the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter,  using a  
+     * Breadth-First Search algorithm which
+     * stores its frontier in the queue passed 
+     * on as parameter.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param q
+     *  the (empty) queue to use for the search,
+     *  e.g. an <b>ArrayQueue</b> or a 
+     *  <b>QueueImplementation</b>
+     * @return
+     *  an instance of <b>ArrayList&lt;Solution&gt;</b>
+     * containing all the solutions
+     */
+    public static ArrayList<Solution> solve(GameModel model, Queue<Solution> q){
 
  
         if(model == null) {
             throw new NullPointerException("model can't be null");
         }
+        if(q == null) {
+            throw new NullPointerException("queue can't be null");
+        }
+        if(!q.isEmpty()) {
+            throw new IllegalArgumentException("queue must be empty");
+        }
 
-        
-        Queue<Solution>  q = new QueueImplementation<Solution>();
         ArrayList<Solution> solutions  = new ArrayList<Solution>();
 
         q.enqueue(new Solution(model.getWidth(),model.getHeight()));
-        long start = System.currentTimeMillis();
-        while(!q.isEmpty()){
-            Solution s  = q.dequeue();
-            if(s.isReady()){
-                // by construction, it is successfull
+        search(model, q, solutions, System.currentTimeMillis());
+        return solutions;
+    }
+
+   /**
+     * Runs the Breadth-First Search from the partial
+     * solutions already in the queue, until the queue
+     * is empty, and adds the solutions found to the list.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param q
+     *  the queue of partial solutions
+     * @param solutions
+     *  the list in which the solutions are added
+     * @param start
+     *  the time at which the search started, in milliseconds
+     */
+    static void search(GameModel model, Queue<Solution> q, ArrayList<Solution> solutions, long start){
+
+        SolutionIterator it = new SolutionIterator(model, q);
+        while(it.hasNext()){
+            if(verbose) {
                 System.out.println("Solution found in " + (System.currentTimeMillis()-start) + " ms" );
-                solutions.add(s);
-            } else {
-                boolean withTrue = s.stillPossible(true,model);
-                boolean withFalse = s.stillPossible(false,model);
-                if(withTrue && withFalse) {
-                    Solution s2 = new Solution(s);
-                    s.setNext(true);
-                    q.enqueue(s);
-                    s2.setNext(false);
-                    q.enqueue(s2);
-                } else if (withTrue) {
-                    s.setNext(true);
-                    if(s.finish(model)){
-                        q.enqueue(s);
-                    }                
-                } else if (withFalse) {
-                    s.setNext(false);
-                    if( s.finish(model)){
-                        q.enqueue(s); 
-                    }               
-                }
             }
+            solutions.add(it.next());
+        }
+    }
+
+
+  /**
+     * The method <b>solveDepthFirst</b> finds all the 
+     * solutions to the <b>Lights Out</b> game 
+     * for the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter, using a Depth-First Search 
+     * algorithm (see <b>DepthFirstIterator</b>).
+     *
+     * It returns the same solutions as <b>solve</b>,
+     * possibly in another order, but the search 
+     * itself only uses O(width*height) memory. Use
+     * a <b>DepthFirstIterator</b> directly to avoid
+     * keeping all the solutions as well.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  an instance of <b>ArrayList&lt;Solution&gt;</b>
+     * containing all the solutions
+     */
+    public static ArrayList<Solution> solveDepthFirst(GameModel model){
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        ArrayList<Solution> solutions  = new ArrayList<Solution>();
+        DepthFirstIterator it = new DepthFirstIterator(model);
+        while(it.hasNext()){
+            solutions.add(it.next());
         }
         return solutions;
     }
 
 
+  /**
+     * The method <b>stream</b> returns the 
+     * solutions to the <b>Lights Out</b> game 
+     * for the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter, as they are found by the 
+     * Breadth-First Search of <b>solve</b>.
+     *
+     * Nothing is computed before the stream is
+     * consumed, and the search stops as soon as 
+     * no more solutions are requested (e.g. with 
+     * <b>limit</b> or <b>findFirst</b>), so the 
+     * solutions never need to be all in memory.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  a sequential and ordered <b>Stream&lt;Solution&gt;</b>
+     * of all the solutions
+     */
+    public static Stream<Solution> stream(GameModel model){
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            new SolutionIterator(model), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+
+  /**
+     * The method <b>solveParallel</b> finds all the 
+     * solutions to the <b>Lights Out</b> game 
+     * for the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter, using the common fork-join pool 
+     * (see <b>ParallelSolver</b>).
+     *
+     * It returns the same solutions as <b>solve</b>,
+     * always in the same order.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  an instance of <b>ArrayList&lt;Solution&gt;</b>
+     * containing all the solutions
+     */
+    public static ArrayList<Solution> solveParallel(GameModel model){
+        return solveParallel(model, ForkJoinPool.commonPool());
+    }
+
+  /**
+     * The method <b>solveParallel</b> finds all the 
+     * solutions to the <b>Lights Out</b> game 
+     * for the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter, using the fork-join pool passed
+     * on as parameter (see <b>ParallelSolver</b>).
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param pool
+     *  the pool running the search
+     * @return
+     *  an instance of <b>ArrayList&lt;Solution&gt;</b>
+     * containing all the solutions
+     */
+    public static ArrayList<Solution> solveParallel(GameModel model, ForkJoinPool pool){
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+        if(pool == null) {
+            throw new NullPointerException("pool can't be null");
+        }
+
+        return pool.invoke(new ParallelSolver(model, pool.getParallelism()));
+    }
+
+
+  /**
+     * The method <b>solveLinear</b> finds all the 
+     * solutions to the <b>Lights Out</b> game 
+     * for the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter, by Gaussian elimination over
+     * GF(2) (see <b>LinearSolver</b>). The 
+     * elimination is only done once per size of 
+     * board (see <b>KernelRegistry</b>).
+     *
+     * It returns the same solutions as <b>solve</b>,
+     * but in polynomial time in the size of the board.
+     * The returned list is a lazy view: each solution
+     * is only built when it is accessed.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  a read-only <b>List&lt;Solution&gt;</b>
+     * containing all the solutions
+     * @throws IllegalStateException
+     *  if the game is solvable but has more than
+     * 2^<b>LinearSolver.MAX_NULLITY</b> solutions
+     */
+    public static List<Solution> solveLinear(GameModel model){
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        return KernelRegistry.get(model).solve(model);
+    }
+
+
+  /**
+     * The method <b>solveChasing</b> finds all the 
+     * solutions to the <b>Lights Out</b> game 
+     * for the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter, by chasing the lights for every
+     * possible first row (see <b>LightChaser</b>).
+     *
+     * Unlike <b>solve</b>, it does not allocate 
+     * anything while exploring: only the solutions
+     * found are built. The board can be at most 
+     * <b>LightChaser.MAX_WIDTH</b> cells wide.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  an instance of <b>ArrayList&lt;Solution&gt;</b>
+     * containing all the solutions
+     */
+    public static ArrayList<Solution> solveChasing(GameModel model){
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        return new LightChaser(model).solve();
+    }
+
+
   /**
      * The method <b>solveShortest</b> finds 
      * amnd returns (one of) the shortest 
      * solutions to the <b>Lights Out</b> game 
      * for the game on the state specified by 
      * the instance of GameModel passed on as
-     * parameter,  using a  
-     * Breadth-First Search algorithm. 
+     * parameter,  using the linear solver
+     * (see <b>LinearSolver.solveShortest</b>),
+     * which only searches the presses of the 
+     * null space instead of listing every solution.
      *
      * If no solution exist, it returns null.
      * If there are several solutions of the same
@@ -143,6 +394,10 @@ public class LightsOut {
      *  reference to the GameModel instance
      * @return
      *  the Shortest solution, null if there is none
+     * @throws IllegalStateException
+     *  if the game is solvable but has too many
+     * solutions to search them for the shortest one
+     * (more than 2^<b>LinearSolver.MAX_NULLITY</b>)
      */
     public static Solution solveShortest(GameModel model){
 
@@ -150,25 +405,123 @@ public class LightsOut {
             throw new NullPointerException("model can't be null");
         }
 
-        ArrayList<Solution> results = solve(model);
-        if(results.size() == 0){
-            return null;
+        return KernelRegistry.get(model).solveShortest(model);
+    }
+  /**
+     * The method <b>solveSymmetric</b> finds all the 
+     * solutions to the <b>Lights Out</b> game 
+     * for an initially completely ``off'' board 
+     * of size <b>widthxheight</b>, up to the 
+     * symmetries of the board (see <b>SolutionOrbit</b>).
+     *
+     * Each orbit gives its size, and can be expanded
+     * into the solutions it stands for; all together,
+     * they are the solutions returned by 
+     * <b>solve(width,height)</b>.
+     *
+     * @param width
+     *  the width of the board, at most 
+     *  <b>LightChaser.MAX_WIDTH</b>
+     * @param height
+     *  the height of the board
+     * @return
+     *  an instance of <b>ArrayList&lt;SolutionOrbit&gt;</b>
+     * containing one instance per orbit
+     */
+    public static ArrayList<SolutionOrbit> solveSymmetric(int width, int height){
+        return SolutionOrbit.findAll(width, height);
+    }
+
+
+  /**
+     * The method <b>isSolvable</b> returns true 
+     * if the game on the state specified by 
+     * the instance of GameModel passed on as
+     * parameter has a solution, without looking
+     * for one (see <b>LinearSolver.isSolvable</b>).
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  true if <b>solve</b> would find at least 
+     * one solution
+     */
+    public static boolean isSolvable(GameModel model){
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        return KernelRegistry.get(model).isSolvable(model);
+    }
+
+  /**
+     * The method <b>solveAll</b> finds (one of) the
+     * shortest solutions of each game of the list,
+     * sharing the work between the games of the same
+     * size (see <b>BatchSolver</b>).
+     *
+     * @param models
+     *  the games to solve
+     * @return
+     *  an instance of <b>ArrayList&lt;Solution&gt;</b>
+     * containing the solution of each game, in the order
+     * of the list, null for the games without solution
+     * and for the games with too many solutions to search
+     * them (which <b>isSolvable</b> tells apart)
+     */
+    public static ArrayList<Solution> solveAll(List<GameModel> models){
+
+        if(models == null) {
+            throw new NullPointerException("models can't be null");
         }
 
-        Solution res = results.get(0);
-        for(int i =1; i < results.size(); i++){
-            if(results.get(i).getSize() < res.getSize()){
-                res = results.get(i);
-            }
+        ArrayList<Solution> solutions = new ArrayList<Solution>(models.size());
+        BatchSolver it = new BatchSolver(models.iterator());
+        while(it.hasNext()){
+            solutions.add(it.next());
+        }
+        return solutions;
+    }
+
+  /**
+     * The method <b>solveAll</b> finds (one of) the
+     * shortest solutions of each game of the stream,
+     * sharing the work between the games of the same
+     * size (see <b>BatchSolver</b>). The games are 
+     * read by batches, as the returned stream is 
+     * consumed.
+     *
+     * @param models
+     *  the games to solve
+     * @return
+     *  a sequential and ordered <b>Stream&lt;Solution&gt;</b>
+     * of the solution of each game, in the order of the 
+     * games, null for the games without solution and for
+     * the games with too many solutions to search them
+     * (which <b>isSolvable</b> tells apart)
+     */
+    public static Stream<Solution> solveAll(Stream<GameModel> models){
+
+        if(models == null) {
+            throw new NullPointerException("models can't be null");
         }
-        return res;
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            new BatchSolver(models.iterator()), Spliterator.ORDERED), false);
     }
+
+
    /**
      * <b>main</b> of the application. Creates the instance of  GameController 
      * and starts the game. If two parameters width and height
      * are passed, they are used. 
      * Otherwise, a default value is used. Defaults values are also
      * used if the paramters are too small (less than 1).
+     *
+     * With the parameter --server, optionally followed by a port,
+     * no game is started: the solver is served on that port (see
+     * <b>SolverServer</b>) until the process is stopped.
      * 
      * @param args
      *            command line parameters
@@ -176,7 +529,15 @@ public class LightsOut {
      public static void main(String[] args) {
         int width   = DEFAULT_WIDTH;
         int height  = DEFAULT_HEIGTH;
+
+        if (args.length > 0 && args[0].equals("--server")) {
+            serve(args);
+            return;
+        }
  
+        // the icons are decoded in the background
+        // while the game starts
+        IconLoader.getGlobal();
         StudentInfo.display();
 
         if (args.length == 2) {
@@ -200,5 +561,23 @@ public class LightsOut {
         GameController game = new GameController(width, height);
     }
 
+    private static void serve(String[] args) {
+        int port = SolverServer.DEFAULT_PORT;
+        if (args.length > 1) {
+            try{
+                port = Integer.parseInt(args[1]);
+            } catch(NumberFormatException e){
+                System.out.println("Invalid port, using default...");
+            }
+        }
+        try{
+            SolverServer server = new SolverServer(port);
+            System.out.println("Solver listening on port " + server.getPort());
+            server.run();
+        } catch(IOException | IllegalArgumentException e){
+            System.out.println("Could not start the server: " + e.getMessage());
+        }
+    }
+
 
 }
@@ -0,0 +1,625 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The class <b>LinearSolver</b> solves the <b>Lights Out</b> game
+ * as a system of linear equations over GF(2).
+ *
+ * Each cell of a board of size <b>widthxheight</b> is a variable
+ * (pressed or not), and each cell gives one equation: the parity
+ * of the presses in its neighborhood must turn it ``on''. The toggle
+ * matrix of that system only depends on the dimensions of the
+ * board, so it is reduced once, by Gauss-Jordan elimination, when
+ * the instance is created. Solving a given game then only costs a
+ * matrix-vector product.
+ *
+ * Bit vectors are stored in arrays of <b>long</b>; bit
+ * <b>i*width+j</b> is the cell at row i and column j, which is the
+ * order in which <b>Solution.setNext</b> fills a solution.
+ */
+public class LinearSolver {
+
+    /**
+     * minimize checks for an interruption when the
+     * candidate number has these bits clear
+     */
+    private static final int INTERRUPT_CHECK_MASK = (1 << 16) - 1;
+
+    /**
+     * the largest nullity for which the solutions are
+     * listed by <b>solve</b> or searched by <b>minimize</b>
+     */
+    public static final int MAX_NULLITY = 30;
+
+    /**
+     * width of the game
+     */
+    private int width;
+
+    /**
+     * height of the game
+     */
+    private int height;
+
+    /**
+     * number of cells (and of variables), width*height
+     */
+    private int cells;
+
+    /**
+     * number of longs used by a bit vector of length cells
+     */
+    private int words;
+
+    /**
+     * rank of the toggle matrix
+     */
+    private int rank;
+
+    /**
+     * pivots[r] is the column of the pivot of row r
+     * of the reduced toggle matrix, for r &lt; rank
+     */
+    private int[] pivots;
+
+    /**
+     * the row operations applied to the toggle matrix
+     * during the elimination: transform*A is the reduced
+     * matrix. Rows rank and above describe the equations
+     * that a solvable board must satisfy.
+     */
+    private long[][] transform;
+
+    /**
+     * a basis of the null space of the toggle matrix, i.e.
+     * the ``quiet patterns'' which do not change the board
+     */
+    private long[][] nullSpace;
+
+    /**
+     * Constructor. Builds and reduces the toggle matrix
+     * for a board of size <b>widthxheight</b>.
+     *
+     * @param width
+     *  the width of the board
+     * @param height
+     *  the height of the board
+     */
+    public LinearSolver(int width, int height) {
+
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("Wrong dimensions " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        cells = width*height;
+        words = Bits.words(cells);
+
+        long[][] matrix = new long[cells][words];
+        transform = new long[cells][words];
+
+        for(int i = 0; i < height; i++){
+            for(int j = 0; j < width; j++){
+                int v = i*width + j;
+                Bits.set(matrix[v], v);
+                if(i > 0) {
+                    Bits.set(matrix[v], v - width);
+                }
+                if(i < height - 1) {
+                    Bits.set(matrix[v], v + width);
+                }
+                if(j > 0) {
+                    Bits.set(matrix[v], v - 1);
+                }
+                if(j < width - 1) {
+                    Bits.set(matrix[v], v + 1);
+                }
+                Bits.set(transform[v], v);
+            }
+        }
+
+        pivots = new int[cells];
+        rank = 0;
+        for(int c = 0; c < cells && rank < cells; c++){
+            int w = c >>> 6;
+            long mask = 1L << c;
+            int r = rank;
+            while(r < cells && (matrix[r][w] & mask) == 0) {
+                r++;
+            }
+            if(r == cells) {
+                continue;
+            }
+            swap(matrix, r, rank);
+            swap(transform, r, rank);
+            for(r = 0; r < cells; r++){
+                if(r != rank && (matrix[r][w] & mask) != 0) {
+                    Bits.xor(matrix[r], matrix[rank]);
+                    Bits.xor(transform[r], transform[rank]);
+                }
+            }
+            pivots[rank++] = c;
+        }
+
+        // every non-pivot column gives one vector of the basis
+        nullSpace = new long[cells - rank][];
+        int r = 0;
+        int k = 0;
+        for(int c = 0; c < cells; c++){
+            if(r < rank && pivots[r] == c) {
+                r++;
+                continue;
+            }
+            long[] v = new long[words];
+            Bits.set(v, c);
+            for(int p = 0; p < rank; p++){
+                if(Bits.get(matrix[p], c)) {
+                    Bits.set(v, pivots[p]);
+                }
+            }
+            nullSpace[k++] = v;
+        }
+    }
+
+    private LinearSolver(int width, int height, int rank, int[] pivots,
+                         long[][] transform, long[][] nullSpace) {
+        this.width = width;
+        this.height = height;
+        cells = width*height;
+        words = Bits.words(cells);
+        this.rank = rank;
+        this.pivots = pivots;
+        this.transform = transform;
+        this.nullSpace = nullSpace;
+    }
+
+    /**
+     * returns the number of bytes used by <b>write</b>
+     *
+     * @return the size of the binary form of this solver
+     */
+    int binarySize() {
+        return 4*4 + 4*rank + 8*words*(cells + nullSpace.length);
+    }
+
+    /**
+     * writes this solver in binary form: width, height,
+     * rank, nullity, the pivots, then the rows of the
+     * transform and the null space basis
+     *
+     * @param out
+     *  the buffer, with at least binarySize() bytes left
+     */
+    void write(ByteBuffer out) {
+        out.putInt(width).putInt(height).putInt(rank).putInt(nullSpace.length);
+        for(int r = 0; r < rank; r++){
+            out.putInt(pivots[r]);
+        }
+        for(long[] row : transform){
+            for(long w : row){
+                out.putLong(w);
+            }
+        }
+        for(long[] row : nullSpace){
+            for(long w : row){
+                out.putLong(w);
+            }
+        }
+    }
+
+    /**
+     * reads a solver written by <b>write</b>. The pivots
+     * must be increasing columns of the board, and the rows
+     * must have no bit set past the last cell, so that a 
+     * damaged solver is rejected rather than used.
+     *
+     * @param in
+     *  the buffer
+     * @return the solver
+     * @throws IllegalArgumentException if the buffer
+     *  does not contain a valid solver
+     */
+    static LinearSolver read(ByteBuffer in) {
+        try{
+            int width = in.getInt();
+            int height = in.getInt();
+            int rank = in.getInt();
+            int nullity = in.getInt();
+            if(width < 1 || height < 1 || rank < 0 || nullity < 0 
+               || (long)width*height > Integer.MAX_VALUE - 63 || (long)rank + nullity != (long)width*height) {
+                throw new IllegalArgumentException("Invalid solver header");
+            }
+            int cells = width*height;
+            int words = Bits.words(cells);
+            if(in.remaining() < 4L*rank + 8L*words*(cells + nullity)) {
+                throw new BufferUnderflowException();
+            }
+            int[] pivots = new int[cells];
+            for(int r = 0; r < rank; r++){
+                pivots[r] = in.getInt();
+                if(pivots[r] >= cells || (r == 0 ? pivots[r] < 0 : pivots[r] <= pivots[r - 1])) {
+                    throw new IllegalArgumentException("Invalid pivot " + pivots[r]);
+                }
+            }
+            LongBuffer longs = in.asLongBuffer();
+            long[][] transform = new long[cells][words];
+            for(long[] row : transform){
+                longs.get(row);
+                checkRow(row, cells);
+            }
+            long[][] nullSpace = new long[nullity][words];
+            for(long[] row : nullSpace){
+                longs.get(row);
+                checkRow(row, cells);
+            }
+            in.position(in.position() + 8*longs.position());
+            return new LinearSolver(width, height, rank, pivots, transform, nullSpace);
+        } catch(BufferUnderflowException e){
+            throw new IllegalArgumentException("Truncated solver");
+        }
+    }
+
+    private static void checkRow(long[] row, int cells) {
+        if((cells & 63) != 0 && (row[row.length - 1] >>> (cells & 63)) != 0L) {
+            throw new IllegalArgumentException("Bits set outside of the board");
+        }
+    }
+
+    /**
+     * Getter method for the width of the board
+     *
+     * @return the width of the board
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Getter method for the height of the board
+     *
+     * @return the height of the board
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Getter method for the rank of the toggle matrix
+     *
+     * @return the rank of the toggle matrix
+     */
+    public int getRank(){
+        return rank;
+    }
+
+    /**
+     * returns the dimension of the null space of the toggle
+     * matrix. A solvable game has 2^nullity solutions.
+     *
+     * @return the dimension of the null space
+     */
+    public int getNullity(){
+        return nullSpace.length;
+    }
+
+    /**
+     * returns true if the game in the state specified by
+     * the model has a solution.
+     *
+     * The toggle matrix is symmetric, so the boards it can
+     * reach are exactly the ones orthogonal to its null
+     * space: the game is solvable if and only if each quiet
+     * pattern covers an even number of dots which are off.
+     * This only costs nullity*words popcounts.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return true if the game has at least one solution
+     */
+    public boolean isSolvable(GameModel model) {
+
+        checkModel(model);
+
+        long[] off = model.toBits();
+        long[] all = new long[words];
+        Bits.fill(all, cells);
+        Bits.xor(off, all);
+        for(long[] quiet : nullSpace){
+            if(Bits.parity(quiet, off)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * computes one solution of the game in the state specified
+     * by the model, with every free variable set to false.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  the bits of the solution, null if the game has no solution
+     */
+    public long[] particular(GameModel model) {
+
+        checkModel(model);
+
+        // the cells which are off must be toggled an odd number of times
+        long[] target = model.toBits();
+        long[] all = new long[words];
+        Bits.fill(all, cells);
+        Bits.xor(target, all);
+
+        for(int r = rank; r < cells; r++){
+            if(Bits.parity(transform[r], target)) {
+                return null;
+            }
+        }
+        long[] x = new long[words];
+        for(int r = 0; r < rank; r++){
+            if(Bits.parity(transform[r], target)) {
+                Bits.set(x, pivots[r]);
+            }
+        }
+        return x;
+    }
+
+    /**
+     * computes one solution for each of up to 64 games of
+     * the size of this solver at once, with every free
+     * variable set to false.
+     *
+     * The games are bit-sliced: bit l of word v says if the
+     * dot v of game l is off, so that each xor of the 
+     * matrix-vector product works on the 64 games.
+     *
+     * @param models
+     *  the games, all of the size of this solver
+     * @param from
+     *  the index of the first game to solve
+     * @param count
+     *  the number of games to solve, at most 64
+     * @return
+     *  the bits of the solution of each game, null for
+     *  the games which have no solution
+     */
+    public long[][] particular(GameModel[] models, int from, int count) {
+
+        if(count < 0 || count > 64) {
+            throw new IllegalArgumentException("Wrong number of games " + count);
+        }
+
+        long[] all = new long[words];
+        Bits.fill(all, cells);
+        long[] lanes = new long[cells];
+        for(int l = 0; l < count; l++){
+            checkModel(models[from + l]);
+            long[] off = models[from + l].toBits();
+            Bits.xor(off, all);
+            for(int w = 0; w < words; w++){
+                for(long bits = off[w]; bits != 0; bits &= bits - 1){
+                    lanes[(w << 6) + Long.numberOfTrailingZeros(bits)] |= 1L << l;
+                }
+            }
+        }
+
+        long[] pressed = new long[rank];
+        long unsolvable = 0L;
+        for(int r = 0; r < cells; r++){
+            long lane = 0L;
+            long[] row = transform[r];
+            for(int w = 0; w < words; w++){
+                for(long bits = row[w]; bits != 0; bits &= bits - 1){
+                    lane ^= lanes[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                }
+            }
+            if(r < rank) {
+                pressed[r] = lane;
+            } else {
+                unsolvable |= lane;
+            }
+        }
+
+        long[][] xs = new long[count][words];
+        for(int r = 0; r < rank; r++){
+            for(long bits = pressed[r]; bits != 0; bits &= bits - 1){
+                Bits.set(xs[Long.numberOfTrailingZeros(bits)], pivots[r]);
+            }
+        }
+        for(int l = 0; l < count; l++){
+            if((unsolvable & (1L << l)) != 0) {
+                xs[l] = null;
+            }
+        }
+        return xs;
+    }
+
+    /**
+     * The method <b>solve</b> finds all the
+     * solutions to the <b>Lights Out</b> game
+     * for the game on the state specified by
+     * the instance of GameModel passed on as
+     * parameter.
+     *
+     * The list is a lazy view: solution number k is
+     * the particular solution plus the null space
+     * vectors selected by the bits of k, and it is
+     * only built when it is accessed.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  a read-only <b>List&lt;Solution&gt;</b>
+     * of all the solutions
+     * @throws IllegalStateException
+     *  if the game is solvable and the nullity is
+     * more than <b>MAX_NULLITY</b>
+     */
+    public List<Solution> solve(GameModel model) {
+
+        long[] x = particular(model);
+        if(x == null) {
+            return Collections.emptyList();
+        }
+        if(nullSpace.length > MAX_NULLITY) {
+            throw new IllegalStateException("Too many solutions: 2^" + nullSpace.length);
+        }
+        return new SolutionSpace(x);
+    }
+
+    /**
+     * The method <b>solveShortest</b> finds
+     * and returns (one of) the shortest
+     * solutions to the <b>Lights Out</b> game
+     * for the game on the state specified by
+     * the instance of GameModel passed on as
+     * parameter, without building the other
+     * solutions (see <b>minimize</b>).
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  the Shortest solution, null if there is none
+     * @throws IllegalStateException
+     *  if the game is solvable and the nullity is
+     * more than <b>MAX_NULLITY</b>
+     */
+    public Solution solveShortest(GameModel model) {
+
+        return shortest(model, particular(model));
+    }
+
+    /**
+     * returns the shortest solution of the game among the
+     * solutions which differ from x by a null space vector
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param x
+     *  the bits of a solution of the game, null if
+     *  it has none
+     * @return
+     *  the Shortest solution, null if x is null
+     */
+    Solution shortest(GameModel model, long[] x) {
+
+        if(x == null) {
+            return null;
+        }
+
+        // a click changes at most 5 dots, and every dot that
+        // is off must be changed: no solution can be shorter
+        int out = cells - Bits.count(model.toBits());
+        return toSolution(minimize(x, (out + 4)/5));
+    }
+
+    /**
+     * finds a solution with the fewest presses among
+     * the solutions x + v, for v in the null space.
+     *
+     * The 2^nullity candidates are visited in Gray code
+     * order, so going from one to the next is a single
+     * xor with a basis vector, followed by a popcount.
+     * The search checks every 2^16 candidates whether the
+     * thread was interrupted, so that a solve which is
+     * no longer needed can be cancelled.
+     *
+     * @param x
+     *  the bits of a solution, which are not modified
+     * @param bound
+     *  a lower bound on the number of presses: the search
+     *  stops as soon as a solution that short is found
+     * @return
+     *  the bits of a shortest solution
+     * @throws CancellationException
+     *  if the thread was interrupted during the search
+     * @throws IllegalStateException
+     *  if the nullity is more than <b>MAX_NULLITY</b>
+     */
+    public long[] minimize(long[] x, int bound) {
+
+        if(nullSpace.length > MAX_NULLITY) {
+            throw new IllegalStateException("Too many solutions: 2^" + nullSpace.length);
+        }
+
+        long[] best = x.clone();
+        int bestSize = Bits.count(x);
+        long[] current = x.clone();
+        for(int g = 1; g < (1 << nullSpace.length) && bestSize > bound; g++){
+            if((g & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Search interrupted");
+            }
+            Bits.xor(current, nullSpace[Integer.numberOfTrailingZeros(g)]);
+            int size = Bits.count(current);
+            if(size < bestSize) {
+                System.arraycopy(current, 0, best, 0, words);
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lazy list of the 2^nullity solutions of a game
+     */
+    private class SolutionSpace extends AbstractList<Solution> {
+
+        private long[] particular;
+
+        private SolutionSpace(long[] particular) {
+            this.particular = particular;
+        }
+
+        public Solution get(int index) {
+            if(index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Wrong index " + index);
+            }
+            long[] x = particular.clone();
+            for(int k = 0; k < nullSpace.length; k++){
+                if((index & (1 << k)) != 0) {
+                    Bits.xor(x, nullSpace[k]);
+                }
+            }
+            return toSolution(x);
+        }
+
+        public int size() {
+            return 1 << nullSpace.length;
+        }
+    }
+
+    /**
+     * builds a complete Solution from a bit vector
+     *
+     * @param x
+     *  the bits of the solution, which are not copied
+     * @return
+     *  the corresponding Solution
+     */
+    Solution toSolution(long[] x) {
+        return new Solution(width, height, x);
+    }
+
+    private void checkModel(GameModel model) {
+        if(model == null){
+            throw new NullPointerException("Model is null");
+        }
+        if(width != model.getWidth() || height!= model.getHeight()){
+            throw new IllegalArgumentException("model does not match board");
+        }
+    }
+
+    private static void swap(long[][] m, int a, int b) {
+        long[] tmp = m[a];
+        m[a] = m[b];
+        m[b] = tmp;
+    }
+
+}
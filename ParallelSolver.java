@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The class <b>ParallelSolver</b> is a fork-join task which finds all
+ * the solutions to the <b>Lights Out</b> game.
+ *
+ * The search space is split on the values of the first cells of the
+ * first row: each task extends its partial solution with true and
+ * false, as the Breadth-First Search of <b>LightsOut.solve</b> does,
+ * and forks one subtask per possible value. Once the prefix is long
+ * enough, a task runs the usual Breadth-First Search (with the same
+ * <b>stillPossible</b>/<b>finish</b> pruning) on its own queue.
+ *
+ * The solutions of the ``true'' branch always come before the ones of
+ * the ``false'' branch, so the order of the results does not depend
+ * on the scheduling of the tasks.
+ */
+public class ParallelSolver extends RecursiveTask<ArrayList<Solution>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * reference to the GameModel instance
+     */
+    private GameModel model;
+
+    /**
+     * the partial solution this task starts from
+     */
+    private Solution solution;
+
+    /**
+     * number of positions already specified in solution
+     */
+    private int index;
+
+    /**
+     * length of the prefix after which the tasks stop
+     * forking and search sequentially
+     */
+    private int splitDepth;
+
+    /**
+     * Constructor. Creates the root task for the game
+     * in the state specified by the model.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param parallelism
+     *  the number of threads which will run the tasks
+     */
+    public ParallelSolver(GameModel model, int parallelism) {
+
+        if(model == null){
+            throw new NullPointerException("Model is null");
+        }
+
+        this.model = model;
+        solution = new Solution(model.getWidth(), model.getHeight());
+        index = 0;
+
+        // about 8 tasks per thread, to balance the load
+        int depth = 3 + 32 - Integer.numberOfLeadingZeros(Math.max(parallelism, 1));
+        splitDepth = Math.min(depth, model.getWidth());
+    }
+
+    private ParallelSolver(ParallelSolver parent, Solution solution) {
+        model = parent.model;
+        splitDepth = parent.splitDepth;
+        index = parent.index + 1;
+        this.solution = solution;
+    }
+
+    protected ArrayList<Solution> compute() {
+
+        ArrayList<Solution> solutions  = new ArrayList<Solution>();
+
+        if(solution.isReady() || index >= splitDepth) {
+            Queue<Solution> q = new ArrayQueue<Solution>();
+            q.enqueue(solution);
+            LightsOut.search(model, q, solutions, System.currentTimeMillis());
+            return solutions;
+        }
+
+        boolean withTrue = solution.stillPossible(true,model);
+        boolean withFalse = solution.stillPossible(false,model);
+        if(withTrue && withFalse) {
+            Solution s2 = new Solution(solution);
+            solution.setNext(true);
+            s2.setNext(false);
+            ParallelSolver falseTask = new ParallelSolver(this, s2);
+            falseTask.fork();
+            solutions.addAll(new ParallelSolver(this, solution).compute());
+            solutions.addAll(falseTask.join());
+        } else if (withTrue || withFalse) {
+            solution.setNext(withTrue);
+            if(solution.finish(model)){
+                solutions.add(solution);
+            }
+        }
+        return solutions;
+    }
+
+}
@@ -0,0 +1,523 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The class <b>PuzzleStore</b> keeps a library of boards of the
+ * <b>Lights Out</b> game in a file, with the length of their shortest
+ * solution and whether they are solvable.
+ *
+ * The file is only appended to. It starts with a header of 8 bytes,
+ * the magic number and the length of the file up to the end of the
+ * last record completely written, which is updated after each record.
+ * Each puzzle is then a record of 16 bytes, the width, the height,
+ * the flags (<b>SOLVABLE</b>) and the number of presses of a shortest
+ * solution (-1 if unsolvable or unknown), followed by the words of the
+ * board as longs, in the order of <b>Bits</b>. Every record is a
+ * multiple of 8 bytes, so the words are read directly from the mapping
+ * of the file, without parsing.
+ *
+ * The puzzles are numbered from 0 in the order they were added. When
+ * the file is opened, its records are scanned once to build an index
+ * of their offsets, so a puzzle is found by its number in O(1), and an
+ * index of the numbers by dimensions, for the scans by size of board.
+ * The bytes past the length given by the header are a record whose
+ * writing was cut short by a crash, and are dropped. Any record which
+ * can't be read before that length makes the opening fail, and the
+ * file is left as it is.
+ *
+ * The file is locked while the store is open, so that no other store,
+ * in this process or another one, appends to it or drops its records
+ * meanwhile.
+ *
+ * The file is read through a <b>MappedByteBuffer</b>, which is mapped
+ * again when records were added past its end; it can't grow beyond
+ * 2GB. An instance can be shared between threads.
+ */
+public class PuzzleStore implements Closeable {
+
+    /**
+     * the puzzle has a solution
+     */
+    public static final int SOLVABLE = 1;
+
+    /**
+     * first bytes of the file: "LOP" and the version of the format
+     */
+    private static final int MAGIC = 0x4C4F5002;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    private FileChannel channel;
+
+    /**
+     * the lock of the file, released when the
+     * channel is closed
+     */
+    private FileLock lock;
+
+    /**
+     * the files of the stores open in this process. Closing
+     * any channel of a file drops the locks of the process on
+     * it, so a file is checked here before being opened again
+     */
+    private static final HashSet<Path> openFiles = new HashSet<Path>();
+
+    /**
+     * the file of the store, as recorded in openFiles
+     */
+    private Path path;
+
+    /**
+     * the file, mapped up to mapped.capacity()
+     */
+    private MappedByteBuffer mapped;
+
+    /**
+     * the size of the file
+     */
+    private long end;
+
+    /**
+     * the offset of each puzzle in the file
+     */
+    private long[] offsets;
+
+    /**
+     * the number of puzzles
+     */
+    private int count;
+
+    /**
+     * the numbers of the puzzles, by dimensions
+     */
+    private HashMap<Long,IdList> byDimensions;
+
+    /**
+     * a growable list of puzzle numbers, in increasing order
+     */
+    private static class IdList {
+        private int[] ids = new int[8];
+        private int size = 0;
+
+        private void add(int id) {
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, 2*size);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Constructor. Opens the store in the given file,
+     * creating it if it does not exist.
+     *
+     * @param file
+     *  the file of the store
+     * @throws IOException
+     *  if the file can't be opened, is not a store or
+     *  has a damaged record, or if another store has 
+     *  it open
+     */
+    public PuzzleStore(Path file) throws IOException {
+
+        if(file == null) {
+            throw new NullPointerException("file can't be null");
+        }
+
+        path = file.toAbsolutePath().normalize();
+        synchronized(openFiles) {
+            if(!openFiles.add(path)) {
+                throw new IOException("Store is in use: " + file);
+            }
+        }
+        try{
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                       StandardOpenOption.CREATE);
+        } catch(IOException | RuntimeException e){
+            release();
+            throw e;
+        }
+        try{
+            try{
+                lock = channel.tryLock();
+            } catch(OverlappingFileLockException e){
+                lock = null;
+            }
+            if(lock == null) {
+                throw new IOException("Store is in use: " + file);
+            }
+            offsets = new long[64];
+            count = 0;
+            byDimensions = new HashMap<Long,IdList>();
+            if(channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC);
+                header.putInt(HEADER_SIZE);
+                header.flip();
+                write(header, 0);
+            }
+            end = channel.size();
+            if(end < HEADER_SIZE || end > Integer.MAX_VALUE) {
+                throw new IOException("Not a puzzle store: " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            int magic = mapped.getInt(0);
+            if((magic & ~0xFF) != (MAGIC & ~0xFF)) {
+                throw new IOException("Not a puzzle store: " + file);
+            }
+            if(magic != MAGIC) {
+                throw new IOException("Unsupported version " + (magic & 0xFF) + " of store " + file);
+            }
+            scan(mapped.getInt(4));
+        } catch(IOException | RuntimeException e){
+            channel.close();
+            release();
+            throw e;
+        }
+    }
+
+    private void release() {
+        synchronized(openFiles) {
+            openFiles.remove(path);
+        }
+    }
+
+    /**
+     * indexes the records written completely, and drops
+     * the bytes after them, which are a record whose 
+     * writing was cut short. The file is locked, so no
+     * other store can be writing that record.
+     *
+     * @param committed
+     *  the length of the file up to the end of the last
+     *  record, from the header
+     * @throws IOException
+     *  if the length or a record is not valid
+     */
+    private void scan(long committed) throws IOException {
+
+        if(committed < HEADER_SIZE || committed > end) {
+            throw new IOException("Damaged store: " + committed + " bytes of records in a file of " + end);
+        }
+        long offset = HEADER_SIZE;
+        while(offset < committed){
+            if(offset + RECORD_HEADER_SIZE > committed) {
+                throw new IOException("Damaged record at offset " + offset);
+            }
+            int width = mapped.getInt((int)offset);
+            int height = mapped.getInt((int)offset + 4);
+            if(width < 1 || height < 1 || (long)width*height > Integer.MAX_VALUE - 63) {
+                throw new IOException("Damaged record at offset " + offset
+                                      + ": " + width + "x" + height);
+            }
+            long next = offset + recordSize(width, height);
+            if(next > committed || !valid(width*height, mapped.getInt((int)offset + 8), 
+                                          mapped.getInt((int)offset + 12))) {
+                throw new IOException("Damaged record at offset " + offset);
+            }
+            index(offset, width, height);
+            offset = next;
+        }
+        if(committed < end) {
+            System.out.println("Warning, dropping " + (end - committed) + " bytes at the end of the store");
+            channel.truncate(committed);
+            end = committed;
+        }
+    }
+
+    /**
+     * returns true if the flags and the number of presses
+     * of a board of that many cells are consistent
+     */
+    private static boolean valid(int cells, int flags, int presses) {
+        if((flags & ~SOLVABLE) != 0) {
+            return false;
+        }
+        if((flags & SOLVABLE) == 0) {
+            return presses == -1;
+        }
+        return presses >= -1 && presses <= cells;
+    }
+
+    private void index(long offset, int width, int height) {
+        if(count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2*count);
+        }
+        offsets[count] = offset;
+        byDimensions.computeIfAbsent(key(width, height), k -> new IdList()).add(count);
+        count++;
+    }
+
+    private static long key(int width, int height) {
+        return ((long)width << 32) | height;
+    }
+
+    private static long recordSize(int width, int height) {
+        return RECORD_HEADER_SIZE + 8L*Bits.words(width*height);
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * adds a puzzle, solving it to record the length
+     * of its shortest solution
+     *
+     * @param model
+     *  the board of the puzzle
+     * @return the number of the puzzle
+     * @throws IOException
+     *  if the puzzle can't be written
+     */
+    public int add(GameModel model) throws IOException {
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        int flags;
+        int presses;
+        try{
+            Solution solution = LightsOut.solveShortest(model);
+            flags = (solution == null) ? 0 : SOLVABLE;
+            presses = (solution == null) ? -1 : solution.getSize();
+        } catch(CancellationException e){
+            throw e;
+        } catch(IllegalStateException e){
+            // too many solutions to find a shortest one
+            flags = LightsOut.isSolvable(model) ? SOLVABLE : 0;
+            presses = -1;
+        }
+        return add(model, flags, presses);
+    }
+
+    /**
+     * adds a puzzle whose solutions are already known
+     *
+     * @param model
+     *  the board of the puzzle
+     * @param flags
+     *  SOLVABLE if it has a solution, 0 otherwise
+     * @param presses
+     *  the number of presses of a shortest solution,
+     * -1 if unsolvable or unknown
+     * @return the number of the puzzle
+     * @throws IOException
+     *  if the puzzle can't be written
+     */
+    public synchronized int add(GameModel model, int flags, int presses) throws IOException {
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+        if(!valid(model.getWidth()*model.getHeight(), flags, presses)) {
+            throw new IllegalArgumentException("Wrong flags " + flags + " or presses " + presses);
+        }
+        if(channel == null) {
+            throw new IllegalStateException("Store is closed");
+        }
+        long size = recordSize(model.getWidth(), model.getHeight());
+        if(end + size > Integer.MAX_VALUE) {
+            throw new IOException("Store is full");
+        }
+
+        ByteBuffer record = ByteBuffer.allocate((int)size);
+        record.putInt(model.getWidth());
+        record.putInt(model.getHeight());
+        record.putInt(flags);
+        record.putInt(presses);
+        record.asLongBuffer().put(model.toBits());
+        // the view does not move the position of record
+        record.rewind();
+        write(record, end);
+        // the record is complete: commit it
+        ByteBuffer committed = ByteBuffer.allocate(4);
+        committed.putInt((int)(end + size));
+        committed.flip();
+        write(committed, 4);
+        index(end, model.getWidth(), model.getHeight());
+        end += size;
+        return count - 1;
+    }
+
+    /**
+     * returns the number of puzzles in the store
+     *
+     * @return the number of puzzles
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized int getWidth(int id) {
+        return buffer(id).getInt((int)offsets[id]);
+    }
+
+    public synchronized int getHeight(int id) {
+        return buffer(id).getInt((int)offsets[id] + 4);
+    }
+
+    /**
+     * returns true if the puzzle has a solution
+     *
+     * @param id
+     *  the number of the puzzle
+     * @return true if the puzzle is solvable
+     */
+    public synchronized boolean isSolvable(int id) {
+        return (buffer(id).getInt((int)offsets[id] + 8) & SOLVABLE) != 0;
+    }
+
+    /**
+     * returns the number of presses of a shortest solution
+     *
+     * @param id
+     *  the number of the puzzle
+     * @return the number of presses, -1 if the puzzle is
+     *  unsolvable or the number is unknown
+     */
+    public synchronized int getPresses(int id) {
+        return buffer(id).getInt((int)offsets[id] + 12);
+    }
+
+    /**
+     * copies the board of a puzzle, in the order of
+     * <b>Bits</b>, without allocating
+     *
+     * @param id
+     *  the number of the puzzle
+     * @param bits
+     *  where the words of the board are copied, at
+     *  least <b>(width*height+63)/64</b> long
+     */
+    public synchronized void getBits(int id, long[] bits) {
+        MappedByteBuffer in = buffer(id);
+        int offset = (int)offsets[id];
+        int words = Bits.words(in.getInt(offset)*in.getInt(offset + 4));
+        if(bits.length < words) {
+            throw new IllegalArgumentException("Array too short: " + bits.length + " < " + words);
+        }
+        for(int w = 0; w < words; w++){
+            bits[w] = in.getLong(offset + RECORD_HEADER_SIZE + 8*w);
+        }
+    }
+
+    /**
+     * returns the board of a puzzle
+     *
+     * @param id
+     *  the number of the puzzle
+     * @return a new model of the board
+     */
+    public synchronized GameModel getModel(int id) {
+        int width = getWidth(id);
+        int height = getHeight(id);
+        long[] bits = new long[Bits.words(width*height)];
+        getBits(id, bits);
+        return new GameModel(width, height, bits);
+    }
+
+    /**
+     * returns the numbers of the puzzles of
+     * size <b>widthxheight</b>
+     *
+     * @param width
+     *  the width of the boards
+     * @param height
+     *  the height of the boards
+     * @return the numbers, in increasing order
+     */
+    public synchronized int[] ids(int width, int height) {
+        IdList list = byDimensions.get(key(width, height));
+        return (list == null) ? new int[0] : Arrays.copyOf(list.ids, list.size);
+    }
+
+    /**
+     * returns the numbers of the puzzles whose width and
+     * height are in the given ranges, bounds included
+     *
+     * @param minWidth
+     *  the smallest width
+     * @param maxWidth
+     *  the largest width
+     * @param minHeight
+     *  the smallest height
+     * @param maxHeight
+     *  the largest height
+     * @return the numbers, in increasing order
+     */
+    public synchronized int[] ids(int minWidth, int maxWidth, int minHeight, int maxHeight) {
+        int total = 0;
+        int[] ids = new int[0];
+        for(Map.Entry<Long,IdList> e : byDimensions.entrySet()){
+            int width = (int)(e.getKey() >>> 32);
+            int height = (int)(long)e.getKey();
+            if(width >= minWidth && width <= maxWidth && height >= minHeight && height <= maxHeight) {
+                IdList list = e.getValue();
+                ids = Arrays.copyOf(ids, total + list.size);
+                System.arraycopy(list.ids, 0, ids, total, list.size);
+                total += list.size;
+            }
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * returns the mapping of the file, mapping it again
+     * if the puzzle was added after the last mapping
+     */
+    private MappedByteBuffer buffer(int id) {
+        if(id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("Wrong puzzle " + id);
+        }
+        if(offsets[id] >= mapped.capacity()) {
+            if(channel == null) {
+                throw new IllegalStateException("Store is closed");
+            }
+            try{
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            } catch(IOException e){
+                throw new IllegalStateException("Could not map the store: " + e.getMessage());
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * writes the puzzles added to the disk, and
+     * closes the file
+     *
+     * @throws IOException
+     *  if the file can't be written
+     */
+    public synchronized void close() throws IOException {
+        if(channel != null) {
+            try{
+                channel.force(true);
+            } finally{
+                channel.close();
+                channel = null;
+                release();
+            }
+        }
+    }
+
+}
@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 
 /**
  * The class <b>Solution</b> is used
@@ -9,10 +11,11 @@ public class Solution {
 
 
     /**
-     * our board. board[i][j] is true is in this
-     * solution, the cell (j,i) is tapped
+     * our board, as a bit vector of width*height bits.
+     * bit i*width+j is set if in this solution, 
+     * the cell (j,i) is tapped
      */
-    private boolean[][] board;
+    private long[] board;
 
     /**
      *  width of the game
@@ -35,6 +38,18 @@ public class Solution {
      */
     private int size;
 
+    /**
+     * the parity constraints of the cells, as a bit 
+     * vector laid out like board: bit i*width+j is set 
+     * if an odd number of the cells of the neighborhood 
+     * of (j,i) are tapped. Since the positions which are
+     * not specified yet are never tapped, a cell can be
+     * checked in constant time, and the cells whose 
+     * neighborhood is complete are exactly the ones the 
+     * next position closes (see safeStillPossible)
+     */
+    private long[] parity;
+
     /**
      * Constructor. Creates an instance of Solution 
      * for a board of size <b>widthxheight</b>. That 
@@ -51,12 +66,43 @@ public class Solution {
         this.width = width;
         this.height = height;
 
-        board = new boolean[height][width];
+        board = new long[Bits.words(width*height)];
+        parity = new long[board.length];
         currentIndex = 0;
         size = 0;
   
     }
 
+    /**
+     * Constructor. Creates a completely specified 
+     * instance of Solution for a board of size 
+     * <b>widthxheight</b> from a bit vector.
+     *
+     * @param width
+     *  the width of the board
+     * @param height
+     *  the height of the board
+     * @param bits
+     *  the solution, bit i*width+j being the cell (j,i).
+     *  The array is used as is, not copied.
+     */
+    Solution(int width, int height, long[] bits) {
+
+        this.width = width;
+        this.height = height;
+
+        board = bits;
+        parity = new long[board.length];
+        currentIndex = width*height;
+        size = Bits.count(bits);
+        for(int w = 0; w < bits.length; w++){
+            for(long b = bits[w]; b != 0; b &= b - 1){
+                toggleNeighborhood((w << 6) + Long.numberOfTrailingZeros(b));
+            }
+        }
+  
+    }
+
    /**
      * Constructor. Creates an instance of Solution 
      * wich is a copy of the instance received
@@ -74,11 +120,32 @@ public class Solution {
         this.height = other.height;
         this.currentIndex = other.currentIndex;
 
-        board = new boolean[height][width];
+        // positions from currentIndex on are never set
+        board = other.board.clone();
+        parity = other.parity.clone();
+        size = other.size;
 
-        for(int i = 0; i < currentIndex; i++){
-            board[i/width][i%width] = other.board[i/width][i%width];
-        } 
+    }
+
+
+   /**
+     * makes this instance of Solution a copy of the
+     * instance received as parameter, reusing its
+     * board instead of allocating a new one
+     *
+     * @param other
+     *  Instance of solution to copy, of the same
+     *  dimensions
+     */
+    public void copyFrom(Solution other) {
+
+        if(width != other.width || height != other.height){
+            throw new IllegalArgumentException("other does not match board");
+        }
+
+        System.arraycopy(other.board, 0, board, 0, board.length);
+        System.arraycopy(other.parity, 0, parity, 0, parity.length);
+        currentIndex = other.currentIndex;
         size = other.size;
 
     }
@@ -112,15 +179,7 @@ public class Solution {
             return false;
         }
 
-        for(int i = 0; i < height ; i++){
-            for(int j = 0; j < width; j++) {
-                if(board[i][j] != otherSolution.board[i][j]){
-                    return false;
-                }
-            }
-        }
-
-        return true;
+        return Arrays.equals(board, otherSolution.board);
 
     }
 
@@ -162,13 +221,38 @@ public class Solution {
             System.out.println("Board already full");
             return;
         }
-        board[currentIndex/width][currentIndex%width] = nextValue;
         if(nextValue) {
+            Bits.set(board, currentIndex);
+            toggleNeighborhood(currentIndex);
             size++;
         }
         currentIndex++;
     }
     
+    /** 
+    * takes back the values specified since the 
+    * position <b>index</b>: the next call to 
+    * setNext will specify that position again.
+    *
+    * @param index
+    *  the number of positions to keep, between 0 
+    *  and the number of positions already specified
+    */
+    public void truncate(int index) {
+
+        if(index < 0 || index > currentIndex) {
+            throw new IllegalArgumentException("Wrong index " + index);
+        }
+        while(currentIndex > index) {
+            currentIndex--;
+            if(Bits.get(board, currentIndex)) {
+                Bits.clear(board, currentIndex);
+                toggleNeighborhood(currentIndex);
+                size--;
+            }
+        }
+    }
+    
     /**
     * returns <b>true</b> if the solution is completely 
     * specified and is indeed working, that is, if it 
@@ -286,24 +370,22 @@ public class Solution {
 
         int i = currentIndex/width;
         int j = currentIndex%width;
-        boolean before = board[i][j];
-        boolean possible = true;
 
-        board[i][j] = nextValue;
-        
-        if((i > 0) && (!neighborhoodOK(i-1,j,model))){
-            possible = false;
+        // the cells whose neighborhood is completed by
+        // the position at currentIndex, which is one of
+        // their neighbors
+        if((i > 0) && (!neighborhoodOK(i-1,j,nextValue,model))){
+            return false;
         }
-        if(possible && (i == (height-1))) {
-            if((j > 0) && (!neighborhoodOK(i,j-1,model))){
-                possible = false;
+        if(i == (height-1)) {
+            if((j > 0) && (!neighborhoodOK(i,j-1,nextValue,model))){
+                return false;
             }
-            if(possible && (j == (width-1))&& (!neighborhoodOK(i,j,model))){
-                possible = false;            
+            if((j == (width-1))&& (!neighborhoodOK(i,j,nextValue,model))){
+                return false;            
             }
         }
-        board[i][j] = before;
-        return possible;
+        return true;
     }    
    
     /**
@@ -315,24 +397,45 @@ public class Solution {
      */
 
     private boolean neighborhoodOK(int i, int j, GameModel model) {
-        
-        int total = 0;
-        if(board[i][j]){
-            total++;
-        }
-        if((i > 0) && (board[i-1][j])) {
-            total++;
+        return neighborhoodOK(i, j, false, model);
+    }
+
+    /**
+     * checks if board[i][j] will be "ON" given
+     * its current state, the state of its neighborhood
+     * and the current solution, if the position at
+     * currentIndex, which must be in its neighborhood,
+     * is set to <b>nextValue</b>.
+     * If the GameModel reference is null, then it is
+     * assumed to be all OFF.
+     */
+
+    private boolean neighborhoodOK(int i, int j, boolean nextValue, GameModel model) {
+        boolean odd = Bits.get(parity, i*width + j) != nextValue;
+        return (model == null || !model.isON(i,j)) ? odd : !odd;                
+    }
+
+    /**
+     * updates the parity constraints of the neighborhood
+     * of the position index, which was just tapped or
+     * untapped
+     */
+    private void toggleNeighborhood(int index) {
+        int i = index/width;
+        int j = index%width;
+        Bits.flip(parity, index);
+        if(i > 0) {
+            Bits.flip(parity, index - width);
         }
-        if((i < height -1 ) && (board[i+1][j])) {
-            total++;
+        if(i < height - 1) {
+            Bits.flip(parity, index + width);
         }
-        if((j > 0) && (board[i][j-1])) {
-            total++;
+        if(j > 0) {
+            Bits.flip(parity, index - 1);
         }
-        if((j < (width - 1)) && (board[i][j+1])) {
-            total++;
+        if(j < width - 1) {
+            Bits.flip(parity, index + 1);
         }
-        return (model == null || !model.isON(i,j)) ? (total%2)== 1 : (total%2) == 0;                
     }
 
 
@@ -424,6 +527,24 @@ public class Solution {
     }
 
 
+   /**
+     * Getter method for the width of the board
+     *
+     * @return the width of the board
+     */
+    public int getWidth() {
+        return width;
+    }
+
+   /**
+     * Getter method for the height of the board
+     *
+     * @return the height of the board
+     */
+    public int getHeight() {
+        return height;
+    }
+
    /**
      * returns the number of selections in the solution
      *
@@ -454,7 +575,18 @@ public class Solution {
         if(j < 0 || j >= height) {
             throw new IllegalArgumentException("Wrong parameter j " + j);
         }
-        return board[j][i];
+        return Bits.get(board, j*width + i);
+    }
+
+   /**
+     * returns a copy of the solution as a bit vector 
+     * of width*height bits: bit i*width+j is set if
+     * the cell (j,i) is tapped
+     *
+     * @return the bits of the solution
+     */
+    long[] toBits(){
+        return board.clone();
     }
  
    /**
@@ -472,7 +604,7 @@ public class Solution {
                 if (j>0) {
                     out.append(",");
                 }
-                out.append(board[i][j]);
+                out.append(Bits.get(board, i*width + j));
             }
             out.append("]"+(i < height -1 ? ",\n" :""));
         }
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The class <b>SolutionCache</b> remembers the shortest solution of
+ * the most recently solved boards, so that solving the same board
+ * again (e.g. after undoing a click, or when replaying a puzzle)
+ * does not run the solver again.
+ *
+ * Boards are keyed by their dimensions and their bits. The cache
+ * holds at most <b>capacity</b> boards and evicts the least recently
+ * used one when it is full. It counts its hits, misses and evictions.
+ * It can be shared between threads.
+ *
+ * Only the bits of the solutions are kept: every call returns a new
+ * <b>Solution</b>, which the caller is free to modify.
+ */
+public class SolutionCache {
+
+    /**
+     * default number of boards kept in the cache
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * the key of a board: its dimensions and its bits
+     */
+    private static class Key {
+
+        private int width;
+        private int height;
+        private long[] bits;
+        private int hash;
+
+        private Key(GameModel model) {
+            width = model.getWidth();
+            height = model.getHeight();
+            bits = model.toBits();
+            hash = 31*(31*width + height) + Arrays.hashCode(bits);
+        }
+
+        public boolean equals(Object other) {
+            if(!(other instanceof Key)) {
+                return false;
+            }
+            Key otherKey = (Key) other;
+            return width == otherKey.width && height == otherKey.height
+                && Arrays.equals(bits, otherKey.bits);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private int capacity;
+
+    /**
+     * the bits of the shortest solution of each board,
+     * null if it is unsolvable
+     */
+    private LinkedHashMap<Key,long[]> entries;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Constructor. Creates an empty cache.
+     *
+     * @param capacity
+     *  the maximum number of boards kept in the cache
+     */
+    public SolutionCache(int capacity) {
+
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Wrong capacity " + capacity);
+        }
+
+        this.capacity = capacity;
+        // access order: the eldest entry is the least recently used
+        entries = new LinkedHashMap<Key,long[]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key,long[]> eldest) {
+                if(size() > SolutionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * returns (one of) the shortest solutions for the game
+     * in the state specified by the model, from the cache
+     * if that board was already solved, otherwise from
+     * <b>LightsOut.solveShortest</b>.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @return
+     *  a new instance of the Shortest solution, null if 
+     * there is none
+     * @throws IllegalStateException
+     *  if the game has too many solutions to search
+     * them for the shortest one (see 
+     * <b>LightsOut.solveShortest</b>)
+     */
+    public Solution solveShortest(GameModel model) {
+
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+
+        Key key = new Key(model);
+        synchronized(this) {
+            long[] bits = entries.get(key);
+            if(bits != null || entries.containsKey(key)) {
+                hits++;
+                return (bits == null) ? null : new Solution(key.width, key.height, bits.clone());
+            }
+            misses++;
+        }
+
+        Solution solution = LightsOut.solveShortest(model);
+        synchronized(this) {
+            entries.put(key, (solution == null) ? null : solution.toBits());
+        }
+        return solution;
+    }
+
+    /**
+     * removes every board from the cache. The
+     * counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * returns the number of boards in the cache
+     *
+     * @return the number of boards in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Getter method for the maximum number of boards in the cache
+     *
+     * @return the capacity of the cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * returns the number of boards found in the cache
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * returns the number of boards which had to be solved
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * returns the number of boards removed from the full cache
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * returns a string representation of the counters
+     *
+     * @return the string representation
+     */
+    public synchronized String toString() {
+        return "SolutionCache[size=" + entries.size() + "/" + capacity
+            + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+}
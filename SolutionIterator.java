@@ -0,0 +1,199 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The class <b>SolutionIterator</b> runs the Breadth-First Search of
+ * <b>LightsOut.solve</b> lazily: each call to <b>next</b> only
+ * explores the partial solutions needed to find the next solution.
+ * The caller controls the pace of the search, and can abandon it at
+ * any time by no longer calling <b>next</b>.
+ *
+ * The partial solutions which are dead ends are recycled through a
+ * <b>SolutionPool</b>, so that new branches reuse their boards.
+ *
+ * The search counts its work in its own fields, and adds the counts
+ * to a <b>SolverStats</b> each time <b>hasNext</b> returns.
+ */
+public class SolutionIterator implements Iterator<Solution> {
+
+    /**
+     * reference to the GameModel instance
+     */
+    private GameModel model;
+
+    /**
+     * the queue of partial solutions still to explore
+     */
+    private Queue<Solution> q;
+
+    /**
+     * the number of partial solutions in the queue,
+     * counted as they are enqueued and dequeued
+     */
+    private int size;
+
+    /**
+     * the next solution, null if it has not been found yet
+     */
+    private Solution next;
+
+    /**
+     * recycles the partial solutions which are dead ends
+     */
+    private SolutionPool pool;
+
+    /**
+     * where the counters of the search are added
+     */
+    private SolverStats stats;
+
+    /**
+     * the number of instances allocated by the pool
+     * already added to stats
+     */
+    private long allocated;
+
+    /**
+     * Constructor. Creates an iterator over all the
+     * solutions of the game in the state specified
+     * by the model.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     */
+    public SolutionIterator(GameModel model) {
+        this(model, root(model), SolverStats.getGlobal());
+    }
+
+    private static Queue<Solution> root(GameModel model) {
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+        Queue<Solution> q = new ArrayQueue<Solution>();
+        q.enqueue(new Solution(model.getWidth(),model.getHeight()));
+        return q;
+    }
+
+    /**
+     * Constructor. Creates an iterator over the
+     * solutions which extend the partial solutions
+     * already in the queue.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param q
+     *  the queue of partial solutions to explore
+     */
+    public SolutionIterator(GameModel model, Queue<Solution> q) {
+        this(model, q, SolverStats.getGlobal());
+    }
+
+    /**
+     * Constructor. Creates an iterator over the
+     * solutions which extend the partial solutions
+     * already in the queue.
+     *
+     * @param model
+     *  reference to the GameModel instance
+     * @param q
+     *  the queue of partial solutions to explore
+     * @param stats
+     *  where the counters of the search are added
+     */
+    public SolutionIterator(GameModel model, Queue<Solution> q, SolverStats stats) {
+
+        long start = System.nanoTime();
+        if(model == null) {
+            throw new NullPointerException("model can't be null");
+        }
+        if(q == null) {
+            throw new NullPointerException("queue can't be null");
+        }
+        if(stats == null) {
+            throw new NullPointerException("stats can't be null");
+        }
+
+        this.model = model;
+        this.q = q;
+        // a Queue does not tell its size: count the partial
+        // solutions given by moving them through another queue
+        Queue<Solution> given = new ArrayQueue<Solution>();
+        size = 0;
+        while(!q.isEmpty()){
+            given.enqueue(q.dequeue());
+            size++;
+        }
+        while(!given.isEmpty()){
+            q.enqueue(given.dequeue());
+        }
+        next = null;
+        pool = new SolutionPool();
+        this.stats = stats;
+        allocated = 0;
+        stats.addSearch(System.nanoTime() - start);
+        stats.add(0, 0, 0, 0, 0, size, size, 0);
+    }
+
+    public boolean hasNext() {
+
+        if(next != null || q.isEmpty()) {
+            return next != null;
+        }
+
+        long start = System.nanoTime();
+        long dequeued = 0;
+        long pruned = 0;
+        long finishCalls = 0;
+        long finishSuccesses = 0;
+        int peak = 0;
+        while(next == null && !q.isEmpty()){
+            Solution s  = q.dequeue();
+            size--;
+            dequeued++;
+            if(s.isReady()){
+                // by construction, it is successfull
+                next = s;
+            } else {
+                boolean withTrue = s.stillPossible(true,model);
+                boolean withFalse = s.stillPossible(false,model);
+                if(withTrue && withFalse) {
+                    Solution s2 = pool.copyOf(s);
+                    s.setNext(true);
+                    q.enqueue(s);
+                    s2.setNext(false);
+                    q.enqueue(s2);
+                    size += 2;
+                    peak = Math.max(peak, size);
+                } else if (withTrue || withFalse) {
+                    pruned++;
+                    s.setNext(withTrue);
+                    finishCalls++;
+                    if(s.finish(model)){
+                        finishSuccesses++;
+                        q.enqueue(s);
+                        size++;
+                    } else {
+                        pool.release(s);
+                    }
+                } else {
+                    pruned += 2;
+                    pool.release(s);
+                }
+            }
+        }
+        stats.add(dequeued, pruned, finishCalls, finishSuccesses, next != null ? 1 : 0,
+                  pool.getAllocated() - allocated, peak, System.nanoTime() - start);
+        allocated = pool.getAllocated();
+        return next != null;
+    }
+
+    public Solution next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException("No more solutions");
+        }
+        Solution result = next;
+        next = null;
+        return result;
+    }
+
+}
@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <b>SolutionOrbit</b> stores the solutions to the
+ * <b>Lights Out</b> game for an initially completely ``off'' board
+ * that are the same up to a symmetry of the board: its reflections,
+ * and its rotations if the board is square.
+ *
+ * An orbit is represented by a single solution, its canonical form,
+ * which is the one with the smallest first row (a solution is
+ * determined by its first row, see <b>LightChaser</b>). The other
+ * solutions of the orbit are only built by <b>expand</b>.
+ */
+public class SolutionOrbit {
+
+    /**
+     * the symmetries of the board: identity, mirror left-right,
+     * mirror top-bottom, half turn, then for square boards only:
+     * transpose, quarter turn, three quarter turn, anti-transpose
+     */
+    private static final int RECTANGLE_SYMMETRIES = 4;
+    private static final int SQUARE_SYMMETRIES = 8;
+
+    /**
+     * the canonical form of the orbit
+     */
+    private Solution representative;
+
+    /**
+     * the number of distinct solutions in the orbit
+     */
+    private int size;
+
+    private SolutionOrbit(Solution representative, int size) {
+        this.representative = representative;
+        this.size = size;
+    }
+
+    /**
+     * Getter method for the canonical form of the orbit
+     *
+     * @return the solution representing the orbit
+     */
+    public Solution getRepresentative() {
+        return representative;
+    }
+
+    /**
+     * returns the number of distinct solutions in the orbit,
+     * between 1 and 4 (8 for a square board)
+     *
+     * @return the size of the orbit
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * builds all the solutions of the orbit, the
+     * representative first
+     *
+     * @return the <b>getSize()</b> solutions of the orbit
+     */
+    public List<Solution> expand() {
+
+        int width = representative.getWidth();
+        int height = representative.getHeight();
+        ArrayList<Solution> solutions = new ArrayList<Solution>(size);
+        for(int t = 0; t < symmetries(width, height); t++){
+            long[] bits = new long[Bits.words(width*height)];
+            for(int i = 0; i < height; i++){
+                for(int j = 0; j < width; j++){
+                    int source = source(t, i, j, width, height);
+                    if(representative.get(source % width, source / width)) {
+                        Bits.set(bits, i*width + j);
+                    }
+                }
+            }
+            Solution s = new Solution(width, height, bits);
+            if(!solutions.contains(s)) {
+                solutions.add(s);
+            }
+        }
+        return solutions;
+    }
+
+    /**
+     * returns a string representation of the orbit
+     *
+     * @return the string representation
+     */
+    public String toString() {
+        return "Orbit of size " + size + ":\n" + representative;
+    }
+
+    /**
+     * finds one representative of each orbit of solutions
+     * to the <b>Lights Out</b> game for an initially
+     * completely ``off'' board of size <b>widthxheight</b>.
+     *
+     * The board is symmetric, so the mirror left-right of
+     * a solution is a solution. The first rows are tried in
+     * increasing order by chasing the lights, and a first
+     * row is skipped if its mirror is smaller: the canonical
+     * form of the orbit is never one of them. A solution
+     * found is kept if no symmetry gives a smaller first row.
+     *
+     * @param width
+     *  the width of the board, at most <b>LightChaser.MAX_WIDTH</b>
+     * @param height
+     *  the height of the board
+     * @return
+     *  an instance of <b>ArrayList&lt;SolutionOrbit&gt;</b>
+     * containing one instance per orbit
+     */
+    public static ArrayList<SolutionOrbit> findAll(int width, int height) {
+
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("Wrong dimensions " + width + "x" + height);
+        }
+
+        ArrayList<SolutionOrbit> orbits = new ArrayList<SolutionOrbit>();
+        LightChaser chaser = new LightChaser(new GameModel(width, height));
+        long mask = (1L << width) - 1;
+        long[] firstRows = new long[SQUARE_SYMMETRIES];
+
+        for(long firstRow = 0; firstRow <= mask; firstRow++){
+            if((Long.reverse(firstRow) >>> (64 - width)) < firstRow || !chaser.chase(firstRow)) {
+                continue;
+            }
+            Solution s = chaser.toSolution();
+            boolean canonical = true;
+            int distinct = 0;
+            for(int t = 0; t < symmetries(width, height) && canonical; t++){
+                long row = 0L;
+                for(int j = 0; j < width; j++){
+                    int source = source(t, 0, j, width, height);
+                    if(s.get(source % width, source / width)) {
+                        row |= 1L << j;
+                    }
+                }
+                canonical = row >= firstRow;
+                boolean seen = false;
+                for(int k = 0; k < distinct; k++){
+                    seen = seen || firstRows[k] == row;
+                }
+                if(!seen) {
+                    firstRows[distinct++] = row;
+                }
+            }
+            if(canonical) {
+                orbits.add(new SolutionOrbit(s, distinct));
+            }
+        }
+        return orbits;
+    }
+
+    private static int symmetries(int width, int height) {
+        return (width == height) ? SQUARE_SYMMETRIES : RECTANGLE_SYMMETRIES;
+    }
+
+    /**
+     * returns the index of the cell which the symmetry t
+     * moves to the cell at row i and column j
+     */
+    private static int source(int t, int i, int j, int width, int height) {
+        switch(t) {
+            case 0: return i*width + j;
+            case 1: return i*width + (width - 1 - j);
+            case 2: return (height - 1 - i)*width + j;
+            case 3: return (height - 1 - i)*width + (width - 1 - j);
+            // the board is square
+            case 4: return j*width + i;
+            case 5: return (width - 1 - j)*width + i;
+            case 6: return j*width + (width - 1 - i);
+            default: return (width - 1 - j)*width + (width - 1 - i);
+        }
+    }
+
+}
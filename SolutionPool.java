@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+
+/**
+ * The class <b>SolutionPool</b> recycles the instances of
+ * <b>Solution</b> of a search. The partial solutions which turn
+ * out to be dead ends are released to the pool, and the next copies
+ * reuse them (see <b>Solution.copyFrom</b>) instead of allocating new
+ * boards. The pool keeps at most <b>capacity</b> free instances.
+ *
+ * A pool is not meant to be shared between threads.
+ */
+public class SolutionPool {
+
+    /**
+     * default maximum number of free instances
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private ArrayList<Solution> free;
+
+    private int capacity;
+
+    private long allocated;
+
+    private long reused;
+
+    /**
+     * Creates an empty pool with the default capacity
+     */
+    public SolutionPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty pool
+     *
+     * @param capacity
+     *  the maximum number of free instances kept
+     */
+    public SolutionPool(int capacity) {
+        if(capacity < 0){
+            throw new IllegalArgumentException("Wrong capacity " + capacity);
+        }
+        this.capacity = capacity;
+        free = new ArrayList<Solution>();
+    }
+
+    /**
+     * returns a copy of the solution, reusing a
+     * free instance if there is one
+     *
+     * @param other
+     *  Instance of solution to copy
+     * @return the copy
+     */
+    public Solution copyOf(Solution other) {
+        if(free.isEmpty()) {
+            allocated++;
+            return new Solution(other);
+        }
+        reused++;
+        Solution s = free.remove(free.size() - 1);
+        s.copyFrom(other);
+        return s;
+    }
+
+    /**
+     * gives back an instance which is not used anymore.
+     * Instances of other dimensions than the ones already
+     * in the pool must not be released.
+     *
+     * @param s
+     *  Instance of solution to recycle
+     */
+    public void release(Solution s) {
+        if(s == null){
+            throw new NullPointerException("Cannot release a null value");
+        }
+        if(free.size() < capacity) {
+            free.add(s);
+        }
+    }
+
+    /**
+     * returns the number of instances allocated by the pool
+     *
+     * @return the number of instances allocated
+     */
+    public long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * returns the number of copies which reused an instance
+     *
+     * @return the number of instances reused
+     */
+    public long getReused() {
+        return reused;
+    }
+
+}
@@ -0,0 +1,166 @@
+import java.util.Random;
+
+/**
+ * The class <b>SolverBenchmark</b> measures the hot paths of the game:
+ * the solvers of <b>LightsOut</b>, <b>GameModel.click</b> and
+ * <b>randomize</b>, the operations of <b>Solution</b> used by the
+ * Breadth-First Search, and the two implementations of <b>Queue</b>.
+ *
+ * Each benchmark is run on square boards (3x3 to 20x20 by default,
+ * or the sizes passed on the command line). Every operation is first
+ * repeated for a warmup period, so that it is compiled, then timed
+ * over several measurement periods; the average and best time per
+ * operation are printed. Results are consumed by a volatile sink so
+ * that the work cannot be optimized away.
+ *
+ * Usage: <b>java SolverBenchmark [size ...]</b>
+ */
+public class SolverBenchmark {
+
+    /**
+     * default sizes of the boards
+     */
+    private static final int[] DEFAULT_SIZES = {3, 5, 8, 10, 12, 15, 20};
+
+    /**
+     * boards wider than this are too slow for the Breadth-First Search
+     */
+    private static final int MAX_SEARCH_SIZE = 12;
+
+    private static final long WARMUP_NANOS = 300000000L;
+
+    private static final long MEASUREMENT_NANOS = 200000000L;
+
+    private static final int MEASUREMENTS = 5;
+
+    /**
+     * an operation to time
+     */
+    private interface Operation {
+        Object run();
+    }
+
+    /**
+     * receives the result of every operation
+     */
+    private static volatile Object sink;
+
+    /**
+     * times the operation and prints one line of results
+     */
+    private static void measure(String name, int size, Operation operation) {
+
+        long end = System.nanoTime() + WARMUP_NANOS;
+        while(System.nanoTime() < end) {
+            sink = operation.run();
+        }
+
+        double total = 0;
+        double best = Double.MAX_VALUE;
+        for(int m = 0; m < MEASUREMENTS; m++){
+            long count = 0;
+            long start = System.nanoTime();
+            long now = start;
+            while(now - start < MEASUREMENT_NANOS) {
+                sink = operation.run();
+                count++;
+                now = System.nanoTime();
+            }
+            double perOperation = (double)(now - start)/count;
+            total += perOperation;
+            best = Math.min(best, perOperation);
+        }
+        System.out.printf("%-28s %3dx%-3d %16.1f %16.1f%n", name, size, size, total/MEASUREMENTS, best);
+    }
+
+    /**
+     * runs every benchmark on one size of board
+     */
+    private static void run(final int size) {
+
+        final GameModel off = new GameModel(size, size);
+        final GameModel random = new GameModel(size, size);
+        random.randomize();
+        final Random generator = new Random(size);
+
+        if(size <= MAX_SEARCH_SIZE) {
+            measure("LightsOut.solve", size, () -> LightsOut.solve(random));
+            measure("LightsOut.solveParallel", size, () -> LightsOut.solveParallel(random));
+            measure("LightsOut.stream", size, () -> LightsOut.stream(random).count());
+        }
+        measure("LightsOut.solveChasing", size, () -> LightsOut.solveChasing(random));
+        measure("LightsOut.solveLinear", size, () -> LightsOut.solveLinear(random).size());
+        measure("LightsOut.solveShortest", size, () -> LightsOut.solveShortest(random));
+
+        measure("GameModel.click", size,
+            () -> { off.click(generator.nextInt(size), generator.nextInt(size)); return off; });
+        measure("GameModel.randomize", size, () -> { off.randomize(); return off; });
+
+        // a solution of the random board with its first row specified
+        Solution full = LightsOut.solveShortest(random);
+        final Solution partial = new Solution(size, size);
+        for(int j = 0; j < size; j++){
+            partial.setNext(full.get(j,0));
+        }
+        measure("Solution.copy", size, () -> new Solution(partial));
+        measure("Solution.stillPossible", size,
+            () -> partial.stillPossible(true, random) || partial.stillPossible(false, random));
+        measure("Solution.copy+finish", size, () -> new Solution(partial).finish(random));
+
+        final int elements = size*size*16;
+        measure("QueueImplementation", size, () -> {
+            Queue<Solution> q = new QueueImplementation<Solution>();
+            for(int i = 0; i < elements; i++){
+                q.enqueue(partial);
+            }
+            while(!q.isEmpty()){
+                q.dequeue();
+            }
+            return q;
+        });
+        measure("ArrayQueue", size, () -> {
+            Queue<Solution> q = new ArrayQueue<Solution>();
+            for(int i = 0; i < elements; i++){
+                q.enqueue(partial);
+            }
+            while(!q.isEmpty()){
+                q.dequeue();
+            }
+            return q;
+        });
+    }
+
+    /**
+     * <b>main</b> of the benchmark. Runs every benchmark
+     * on the sizes of board passed as parameters, or
+     * on the default sizes.
+     *
+     * @param args
+     *            the sizes of the boards
+     */
+    public static void main(String[] args) {
+
+        int[] sizes = DEFAULT_SIZES;
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            try{
+                for(int i = 0; i < args.length; i++){
+                    sizes[i] = Integer.parseInt(args[i]);
+                    if(sizes[i] < 3){
+                        throw new NumberFormatException("size too small");
+                    }
+                }
+            } catch(NumberFormatException e){
+                System.out.println("Invalid argument, using default...");
+                sizes = DEFAULT_SIZES;
+            }
+        }
+
+        LightsOut.setVerbose(false);
+        System.out.printf("%-28s %-7s %16s %16s%n", "Benchmark", "Board", "Avg (ns/op)", "Best (ns/op)");
+        for(int size : sizes){
+            run(size);
+        }
+    }
+
+}
@@ -0,0 +1,551 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <b>SolverServer</b> serves shortest solutions to the
+ * <b>Lights Out</b> game over TCP, without any user interface. It is
+ * started by <b>LightsOut --server [port]</b>, and only listens on the
+ * loopback interface.
+ *
+ * A single thread serves all the connections with a <b>Selector</b>,
+ * and hands the boards to a fixed pool of workers, so a large board
+ * never holds up the other connections. A client can send several
+ * requests without waiting for the answers (pipelining): the responses
+ * come back in the order of the requests. At most
+ * <b>MAX_IN_FLIGHT</b> requests of a connection are solved at once;
+ * the next ones are read as they are answered. When the workers fall
+ * behind all the connections, the requests are held back, and no more
+ * is read, until a worker is free again. The solutions are
+ * computed through the shared <b>SolutionCache</b>, so a board asked
+ * for again is not solved again.
+ *
+ * A request which is not answered within <b>REQUEST_TIMEOUT_MILLIS</b>
+ * of being read is answered <b>FAILED</b>, and its search is
+ * interrupted; the solver of its size is still built and kept, so
+ * the request may succeed if sent again. Each new size of board costs
+ * a solver of a few MB, kept in memory (see <b>KernelRegistry</b>):
+ * the server builds the solvers of at most <b>MAX_SIZES</b> sizes,
+ * and answers the other sizes <b>UNSUPPORTED</b>.
+ *
+ * A request is the width and the height of the board, as two unsigned
+ * big-endian shorts between 1 and <b>MAX_DIMENSION</b>, followed by
+ * the ceil(width*height/8) bytes of the board: bit k of byte b is the
+ * dot at index 8*b+k, row by row, set if it is ``on''.
+ *
+ * A response is a status byte. <b>SOLVED</b> is followed by the number
+ * of presses, as an unsigned big-endian short, and by the presses in
+ * the same layout as the board. <b>UNSOLVABLE</b> comes alone, and so
+ * does <b>UNSUPPORTED</b>, for a board with too many solutions to find
+ * a shortest one (see <b>LinearSolver.minimize</b>) or of a size the
+ * server does not build a solver for, and <b>FAILED</b>, for a request
+ * which timed out or failed in the server. <b>BAD_REQUEST</b> comes
+ * alone too, and the server then closes the connection.
+ */
+public class SolverServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7341;
+
+    /**
+     * the largest width or height of a board: the solver
+     * of a size is built in O((width*height)^3/64)
+     */
+    public static final int MAX_DIMENSION = 64;
+
+    public static final byte SOLVED = 0;
+    public static final byte UNSOLVABLE = 1;
+    public static final byte BAD_REQUEST = 2;
+    public static final byte UNSUPPORTED = 3;
+    public static final byte FAILED = 4;
+
+    /**
+     * the time a request has to be answered, from
+     * the moment it is read
+     */
+    public static final long REQUEST_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * the largest number of requests of a connection
+     * being solved at once
+     */
+    public static final int MAX_IN_FLIGHT = 16;
+
+    /**
+     * the largest number of sizes of board the server
+     * builds a solver for
+     */
+    public static final int MAX_SIZES = 16;
+
+    private static final int HEADER_SIZE = 4;
+
+    /**
+     * the number of requests waiting for a worker beyond
+     * which the requests are held back
+     */
+    private static final int MAX_QUEUED = 256;
+
+    /**
+     * a connection is not read while it has this many
+     * bytes of responses waiting to be sent
+     */
+    private static final int MAX_PENDING_OUTPUT = 1 << 16;
+
+    private Selector selector;
+
+    private ServerSocketChannel server;
+
+    private volatile boolean closed;
+
+    /**
+     * solves the boards
+     */
+    private ThreadPoolExecutor workers;
+
+    /**
+     * the connections with a response completed by a
+     * worker, which the selector thread sends
+     */
+    private ConcurrentLinkedQueue<SelectionKey> ready;
+
+    /**
+     * the connections with a request held back because
+     * the workers were behind, in the order they stopped
+     */
+    private LinkedHashSet<SelectionKey> waiting;
+
+    /**
+     * the sizes of board the server has accepted,
+     * as (width << 16) | height
+     */
+    private HashSet<Integer> sizes;
+
+    /**
+     * the requests and responses of a connection
+     */
+    private static class Connection {
+        private ByteBuffer in = ByteBuffer.allocate(HEADER_SIZE + bytes(MAX_DIMENSION*MAX_DIMENSION));
+        private ByteBuffer out = ByteBuffer.allocate(MAX_PENDING_OUTPUT);
+        // the responses not sent yet, in the order of the requests
+        private ArrayDeque<CompletableFuture<byte[]>> responses = new ArrayDeque<CompletableFuture<byte[]>>();
+        // the client sent all its requests
+        private boolean eof = false;
+        // a request was invalid
+        private boolean failed = false;
+        // a request is held back until a worker is free
+        private boolean waiting = false;
+    }
+
+    /**
+     * the thread running the search of a request, null
+     * while it is not searching. Only that thread is
+     * interrupted when the request times out.
+     */
+    private static class Search {
+        private Thread thread;
+    }
+
+    /**
+     * Constructor. Binds the server to the given
+     * port of the loopback interface.
+     *
+     * @param port
+     *  the port, 0 for any free port
+     * @throws IOException
+     *  if the port can't be bound
+     */
+    public SolverServer(int port) throws IOException {
+
+        if(port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Wrong port " + port);
+        }
+
+        selector = Selector.open();
+        try{
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch(IOException e){
+            selector.close();
+            if(server != null) {
+                server.close();
+            }
+            throw e;
+        }
+        closed = false;
+        // at least two, so that one large board does not
+        // hold up the others even on a single processor
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                         new ArrayBlockingQueue<Runnable>(MAX_QUEUED), r -> {
+            Thread t = new Thread(r, "LightsOut server worker");
+            t.setDaemon(true);
+            return t;
+        });
+        ready = new ConcurrentLinkedQueue<SelectionKey>();
+        waiting = new LinkedHashSet<SelectionKey>();
+        sizes = new HashSet<Integer>();
+    }
+
+    /**
+     * Getter method for the port the server listens on
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * serves the connections until <b>close</b> is called
+     *
+     * @throws IOException
+     *  if the server socket fails
+     */
+    public void run() throws IOException {
+
+        try{
+            while(!closed){
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) {
+                        continue;
+                    }
+                    if(key.isAcceptable()) {
+                        accept();
+                    } else {
+                        serveSafely(key);
+                    }
+                }
+                SelectionKey key;
+                while((key = ready.poll()) != null){
+                    if(key.isValid()) {
+                        serveSafely(key);
+                    }
+                }
+                // a worker is done, so it takes the next request 
+                // queued: the requests held back go on in turn
+                while(!waiting.isEmpty() && workers.getQueue().remainingCapacity() > 0){
+                    key = waiting.iterator().next();
+                    waiting.remove(key);
+                    if(key.isValid()) {
+                        serveSafely(key);
+                    }
+                }
+            }
+        } catch(ClosedSelectorException e){
+            // closed while selecting
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * stops the server and closes all the connections.
+     * It can be called from any thread.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void shutdown() throws IOException {
+        workers.shutdownNow();
+        if(selector.isOpen()) {
+            for(SelectionKey key : selector.keys()){
+                key.channel().close();
+            }
+            selector.close();
+        }
+        server.close();
+    }
+
+    /**
+     * serves the connection, and closes it if it fails,
+     * without stopping the server
+     */
+    private void serveSafely(SelectionKey key) throws IOException {
+        try{
+            serve(key);
+        } catch(IOException | RuntimeException e){
+            // the client went away, or its request broke the server
+            if(e instanceof RuntimeException) {
+                System.out.println("Warning, closing a connection: " + e);
+            }
+            key.cancel();
+            key.channel().close();
+            Connection c = (Connection)key.attachment();
+            for(CompletableFuture<byte[]> response : c.responses){
+                response.cancel(false);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if(channel != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    /**
+     * reads the requests available on the connection, hands
+     * the complete ones to the workers, and sends as much of
+     * the responses completed in order as the socket accepts.
+     * The requests are no longer read while too many of them
+     * are being solved or too many responses are waiting;
+     * they are handled as the responses go.
+     */
+    private void serve(SelectionKey key) throws IOException {
+
+        SocketChannel channel = (SocketChannel)key.channel();
+        Connection c = (Connection)key.attachment();
+
+        if(key.isValid() && key.isReadable() && channel.read(c.in) < 0) {
+            c.eof = true;
+        }
+        c.waiting = false;
+        c.in.flip();
+        while(!c.failed && c.responses.size() < MAX_IN_FLIGHT
+              && c.out.position() < MAX_PENDING_OUTPUT && handle(c, key)){
+            // next request
+        }
+        c.in.compact();
+
+        while(!c.responses.isEmpty() && c.responses.peek().isDone()){
+            byte[] response = response(c.responses.poll());
+            ensureCapacity(c, response.length);
+            c.out.put(response);
+        }
+        c.out.flip();
+        channel.write(c.out);
+        c.out.compact();
+
+        boolean pending = c.out.position() > 0;
+        boolean solving = !c.responses.isEmpty();
+        boolean buffered = hasRequest(c.in);
+        if(!pending && !solving && (c.failed || (c.eof && !buffered))) {
+            key.cancel();
+            channel.close();
+            return;
+        }
+        if(c.waiting) {
+            waiting.add(key);
+        }
+        // the requests left in c.in are handled as soon as
+        // the socket can take more, or a worker is done
+        boolean blocked = c.responses.size() >= MAX_IN_FLIGHT || c.waiting;
+        int ops = (pending || (buffered && !blocked)) ? SelectionKey.OP_WRITE : 0;
+        if(!c.eof && !c.failed && !blocked && c.out.position() < MAX_PENDING_OUTPUT) {
+            ops |= SelectionKey.OP_READ;
+        }
+        key.interestOps(ops);
+    }
+
+    /**
+     * returns the bytes of a completed response
+     */
+    private static byte[] response(CompletableFuture<byte[]> response) {
+        try{
+            return response.join();
+        } catch(RuntimeException e){
+            // timed out or cancelled
+            return new byte[] {FAILED};
+        }
+    }
+
+    /**
+     * returns true if the buffer, in write mode,
+     * holds a complete request
+     */
+    private static boolean hasRequest(ByteBuffer in) {
+        if(in.position() < HEADER_SIZE) {
+            return false;
+        }
+        int width = in.getShort(0) & 0xFFFF;
+        int height = in.getShort(2) & 0xFFFF;
+        return in.position() >= HEADER_SIZE + bytes(width*height);
+    }
+
+    /**
+     * reads the request at the start of c.in, and queues
+     * its response, which a worker computes
+     *
+     * @return false if the request is not complete
+     */
+    private boolean handle(Connection c, SelectionKey key) {
+
+        if(c.in.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        int start = c.in.position();
+        int width = c.in.getShort(start) & 0xFFFF;
+        int height = c.in.getShort(start + 2) & 0xFFFF;
+        if(width < 1 || width > MAX_DIMENSION || height < 1 || height > MAX_DIMENSION) {
+            reject(c);
+            return false;
+        }
+        int size = bytes(width*height);
+        if(c.in.remaining() < HEADER_SIZE + size) {
+            return false;
+        }
+        if(workers.getQueue().remainingCapacity() == 0) {
+            // read again once a worker is free
+            c.waiting = true;
+            return false;
+        }
+
+        c.in.position(start + HEADER_SIZE);
+        long[] bits = new long[Bits.words(width*height)];
+        for(int b = 0; b < size; b++){
+            bits[b >>> 3] |= (c.in.get() & 0xFFL) << ((b & 7) << 3);
+        }
+        GameModel model;
+        try{
+            model = new GameModel(width, height, bits);
+        } catch(IllegalArgumentException e){
+            // bits set after the last dot
+            reject(c);
+            return false;
+        }
+
+        if(!sizes.contains((width << 16) | height)) {
+            if(sizes.size() >= MAX_SIZES && KernelRegistry.peek(width, height) == null) {
+                c.responses.add(CompletableFuture.completedFuture(new byte[] {UNSUPPORTED}));
+                return true;
+            }
+            sizes.add((width << 16) | height);
+        }
+
+        c.responses.add(solve(model, size, key));
+        return true;
+    }
+
+    /**
+     * hands the board to a worker
+     *
+     * @return the future response
+     */
+    private CompletableFuture<byte[]> solve(GameModel model, int size, SelectionKey key) {
+
+        CompletableFuture<byte[]> response = new CompletableFuture<byte[]>();
+        Search search = new Search();
+        try{
+            workers.execute(() -> {
+                if(response.isDone()) {
+                    // timed out or cancelled while queued
+                    return;
+                }
+                try{
+                    // not interruptible: it may read or write a file
+                    KernelRegistry.get(model);
+                    synchronized(search) {
+                        if(response.isDone()) {
+                            return;
+                        }
+                        search.thread = Thread.currentThread();
+                    }
+                    response.complete(encode(GameModel.getSolutionCache().solveShortest(model), size));
+                } catch(CancellationException e){
+                    response.cancel(false);
+                } catch(IllegalStateException e){
+                    // too many solutions to find a shortest one
+                    response.complete(new byte[] {UNSUPPORTED});
+                } catch(RuntimeException e){
+                    System.out.println("Warning, could not solve a " + model.getWidth() + "x"
+                                       + model.getHeight() + " board: " + e);
+                    response.complete(new byte[] {FAILED});
+                } finally{
+                    synchronized(search) {
+                        search.thread = null;
+                    }
+                    // an interrupt which came too late must not
+                    // reach the next request
+                    Thread.interrupted();
+                }
+            });
+        } catch(RejectedExecutionException e){
+            // the server is shutting down
+            response.complete(new byte[] {FAILED});
+            return response;
+        }
+        response.orTimeout(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        response.whenComplete((bytes, e) -> {
+            if(e != null) {
+                synchronized(search) {
+                    if(search.thread != null) {
+                        search.thread.interrupt();
+                    }
+                }
+            }
+            ready.add(key);
+            selector.wakeup();
+        });
+        return response;
+    }
+
+    /**
+     * returns the response giving the solution of
+     * a board of size bytes
+     */
+    private static byte[] encode(Solution solution, int size) {
+        if(solution == null) {
+            return new byte[] {UNSOLVABLE};
+        }
+        byte[] response = new byte[3 + size];
+        response[0] = SOLVED;
+        response[1] = (byte)(solution.getSize() >>> 8);
+        response[2] = (byte)solution.getSize();
+        long[] presses = solution.toBits();
+        for(int b = 0; b < size; b++){
+            response[3 + b] = (byte)(presses[b >>> 3] >>> ((b & 7) << 3));
+        }
+        return response;
+    }
+
+    private static void reject(Connection c) {
+        c.responses.add(CompletableFuture.completedFuture(new byte[] {BAD_REQUEST}));
+        c.failed = true;
+    }
+
+    private static void ensureCapacity(Connection c, int needed) {
+        if(c.out.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2*c.out.capacity(), c.out.position() + needed));
+            c.out.flip();
+            larger.put(c.out);
+            c.out = larger;
+        }
+    }
+
+    /**
+     * returns the number of bytes of a board of the given
+     * number of cells
+     */
+    private static int bytes(int cells) {
+        return (cells + 7) >>> 3;
+    }
+
+}
@@ -0,0 +1,176 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The class <b>SolverStats</b> accumulates the counters of the
+ * Breadth-First Searches run by <b>SolutionIterator</b> (and so by
+ * <b>LightsOut.solve</b>, <b>stream</b> and <b>solveParallel</b>):
+ * the partial solutions dequeued, the branches pruned by
+ * <b>stillPossible</b>, the calls to <b>finish</b> and how many
+ * succeeded, the solutions found, the instances of <b>Solution</b>
+ * allocated, the peak size of the queue, and the time spent setting
+ * up and running the searches, in nanoseconds.
+ *
+ * The searches count in their own fields and add their counters here
+ * each time they return a solution or end, so the counters do not
+ * slow down the exploration. An instance can be shared between
+ * threads.
+ *
+ * The global instance, used by default, is also registered with the
+ * platform MBean server as <b>LightsOut:type=SolverStats</b>.
+ */
+public class SolverStats implements SolverStatsMBean {
+
+    /**
+     * the name of the global instance in the MBean server
+     */
+    public static final String OBJECT_NAME = "LightsOut:type=SolverStats";
+
+    private static SolverStats global;
+
+    private long searches;
+
+    private long nodesDequeued;
+
+    private long branchesPruned;
+
+    private long finishCalls;
+
+    private long finishSuccesses;
+
+    private long solutionsFound;
+
+    private long solutionsAllocated;
+
+    private long peakQueueSize;
+
+    private long setupNanos;
+
+    private long searchNanos;
+
+    /**
+     * returns the instance used by the searches which are
+     * not given one, registering it over JMX the first time
+     *
+     * @return the global instance
+     */
+    public static synchronized SolverStats getGlobal() {
+        if(global == null) {
+            global = new SolverStats();
+            try{
+                ManagementFactory.getPlatformMBeanServer().registerMBean(global, new ObjectName(OBJECT_NAME));
+            } catch(JMException | SecurityException e){
+                System.out.println("Warning, could not register " + OBJECT_NAME + ": " + e.getMessage());
+            }
+        }
+        return global;
+    }
+
+    /**
+     * records the start of a search
+     *
+     * @param nanos
+     *  the time taken to set it up
+     */
+    synchronized void addSearch(long nanos) {
+        searches++;
+        setupNanos += nanos;
+    }
+
+    /**
+     * adds the counters of a part of a search
+     */
+    synchronized void add(long nodesDequeued, long branchesPruned, long finishCalls,
+                          long finishSuccesses, long solutionsFound, long solutionsAllocated,
+                          long peakQueueSize, long searchNanos) {
+        this.nodesDequeued += nodesDequeued;
+        this.branchesPruned += branchesPruned;
+        this.finishCalls += finishCalls;
+        this.finishSuccesses += finishSuccesses;
+        this.solutionsFound += solutionsFound;
+        this.solutionsAllocated += solutionsAllocated;
+        this.peakQueueSize = Math.max(this.peakQueueSize, peakQueueSize);
+        this.searchNanos += searchNanos;
+    }
+
+    public synchronized long getSearches() {
+        return searches;
+    }
+
+    public synchronized long getNodesDequeued() {
+        return nodesDequeued;
+    }
+
+    public synchronized long getBranchesPruned() {
+        return branchesPruned;
+    }
+
+    public synchronized long getFinishCalls() {
+        return finishCalls;
+    }
+
+    public synchronized long getFinishSuccesses() {
+        return finishSuccesses;
+    }
+
+    /**
+     * returns the fraction of the calls to finish
+     * which succeeded, 0 if there was none
+     *
+     * @return the success rate of finish
+     */
+    public synchronized double getFinishSuccessRate() {
+        return finishCalls == 0 ? 0.0 : (double)finishSuccesses/finishCalls;
+    }
+
+    public synchronized long getSolutionsFound() {
+        return solutionsFound;
+    }
+
+    public synchronized long getSolutionsAllocated() {
+        return solutionsAllocated;
+    }
+
+    public synchronized long getPeakQueueSize() {
+        return peakQueueSize;
+    }
+
+    public synchronized long getSetupNanos() {
+        return setupNanos;
+    }
+
+    public synchronized long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * sets all the counters back to 0
+     */
+    public synchronized void reset() {
+        searches = 0;
+        nodesDequeued = 0;
+        branchesPruned = 0;
+        finishCalls = 0;
+        finishSuccesses = 0;
+        solutionsFound = 0;
+        solutionsAllocated = 0;
+        peakQueueSize = 0;
+        setupNanos = 0;
+        searchNanos = 0;
+    }
+
+    /**
+     * returns a string representation of the counters
+     *
+     * @return the string representation
+     */
+    public synchronized String toString() {
+        return "SolverStats[searches=" + searches + ", nodesDequeued=" + nodesDequeued
+            + ", branchesPruned=" + branchesPruned + ", finish=" + finishSuccesses + "/" + finishCalls
+            + ", solutionsFound=" + solutionsFound + ", solutionsAllocated=" + solutionsAllocated
+            + ", peakQueueSize=" + peakQueueSize + ", setupNanos=" + setupNanos
+            + ", searchNanos=" + searchNanos + "]";
+    }
+
+}
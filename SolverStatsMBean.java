@@ -0,0 +1,31 @@
+/**
+ * The management interface of <b>SolverStats</b>, through which
+ * the counters of the searches are published over JMX.
+ */
+public interface SolverStatsMBean {
+
+    long getSearches();
+
+    long getNodesDequeued();
+
+    long getBranchesPruned();
+
+    long getFinishCalls();
+
+    long getFinishSuccesses();
+
+    double getFinishSuccessRate();
+
+    long getSolutionsFound();
+
+    long getSolutionsAllocated();
+
+    long getPeakQueueSize();
+
+    long getSetupNanos();
+
+    long getSearchNanos();
+
+    void reset();
+
+}